@@ -30,11 +30,17 @@ public abstract class AbstractSequencer implements Sequencer
     // 一个基于反射的工具类，它能对指定类的指定的volatile引用字段进行原子更新。(注意这个字段不能是private的) 
     private static final AtomicReferenceFieldUpdater<AbstractSequencer, Sequence[]> SEQUENCE_UPDATER =
         AtomicReferenceFieldUpdater.newUpdater(AbstractSequencer.class, Sequence[].class, "gatingSequences");
+    // 门控序列超过这个数量后改用两层的GatingSequenceTree, 避免生产者每次检查都遍历所有消费者的序列
+    private static final int GATING_TREE_THRESHOLD = 32;
+    private static final int GATING_TREE_FANOUT = 16;
 
     protected final int bufferSize;//记录生产目标RingBuffer的大小
     protected final WaitStrategy waitStrategy;//表示这个生产者的等待策略
     protected final Sequence cursor = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);// 生产者的当前的游标位置，初始为-1
     protected volatile Sequence[] gatingSequences = new Sequence[0];// 消费者当前处理的序号集合
+    private GatingSequenceTree gatingTree;// 非空时gatingSequences只包含这棵树
+    private final BarrierWaitStrategies barrierWaitStrategies;// 创建并唤醒单独指定等待策略的屏障
+    private volatile SlowConsumerEvictionPolicy evictionPolicy;// 生产者被阻塞时用来淘汰慢消费者, 可以为空
 
     /**
      * Create with the specified buffer size and wait strategy.
@@ -55,6 +61,7 @@ public abstract class AbstractSequencer implements Sequencer
 
         this.bufferSize = bufferSize;
         this.waitStrategy = waitStrategy;
+        this.barrierWaitStrategies = new BarrierWaitStrategies(this, cursor, waitStrategy);
     }
 
     /**
@@ -76,12 +83,37 @@ public abstract class AbstractSequencer implements Sequencer
     }
 
     /**
+     * Once more than {@link #GATING_TREE_THRESHOLD} sequences are gating the producers they are moved into a
+     * {@link GatingSequenceTree}, which then becomes the only gating sequence, so that checking the wrap point
+     * reads a few cache lines rather than one per consumer.
+     *
      * @see Sequencer#addGatingSequences(Sequence...)
      */
     @Override
     public final void addGatingSequences(Sequence... gatingSequences)
     {
-        SequenceGroups.addSequences(this, SEQUENCE_UPDATER, this, gatingSequences);
+        synchronized (this)
+        {
+            if (null == gatingTree &&
+                this.gatingSequences.length + gatingSequences.length <= GATING_TREE_THRESHOLD)
+            {
+                SequenceGroups.addSequences(this, SEQUENCE_UPDATER, this, gatingSequences);
+                return;
+            }
+
+            if (null == gatingTree)
+            {
+                final GatingSequenceTree tree = new GatingSequenceTree(GATING_TREE_FANOUT);
+                tree.add(this.gatingSequences);
+                tree.addWhileRunning(this, gatingSequences);
+                gatingTree = tree;
+                this.gatingSequences = new Sequence[] {tree};
+            }
+            else
+            {
+                gatingTree.addWhileRunning(this, gatingSequences);
+            }
+        }
     }
 
     /**
@@ -90,9 +122,57 @@ public abstract class AbstractSequencer implements Sequencer
     @Override
     public boolean removeGatingSequence(Sequence sequence)
     {
-        return SequenceGroups.removeSequence(this, SEQUENCE_UPDATER, sequence);
+        synchronized (this)
+        {
+            if (null != gatingTree)
+            {
+                return gatingTree.remove(sequence);
+            }
+
+            return SequenceGroups.removeSequence(this, SEQUENCE_UPDATER, sequence);
+        }
     }
     
+    /**
+     * Install a policy that detaches consumers which hold producers back for too long.  The policy is consulted
+     * only while a producer is waiting for capacity in {@link #next(int)}.
+     *
+     * @param evictionPolicy the policy, or null to never evict.
+     * @throws IllegalStateException if the policy is already installed on another sequencer.
+     * @throws IllegalArgumentException if the policy's lag threshold is not less than the buffer size.
+     */
+    public void setEvictionPolicy(final SlowConsumerEvictionPolicy evictionPolicy)
+    {
+        if (null != evictionPolicy)
+        {
+            evictionPolicy.attach(this);
+        }
+        this.evictionPolicy = evictionPolicy;
+    }
+
+    /**
+     * Called by implementations on each iteration of the loop waiting for the gating sequences to advance.
+     */
+    protected final void onProducerBlocked()
+    {
+        final SlowConsumerEvictionPolicy evictionPolicy = this.evictionPolicy;
+        if (null != evictionPolicy)
+        {
+            evictionPolicy.onProducerBlocked();
+        }
+    }
+
+    /**
+     * @return a snapshot of the individual gating sequences, looking through the gating tree if there is one.
+     */
+    Sequence[] getGatingSequenceMembers()
+    {
+        synchronized (this)
+        {
+            return null != gatingTree ? gatingTree.getSequences() : gatingSequences;
+        }
+    }
+
     /**
      * @see Sequencer#getMinimumSequence()
      */
@@ -111,6 +191,23 @@ public abstract class AbstractSequencer implements Sequencer
         return new ProcessingSequenceBarrier(this, waitStrategy, cursor, sequencesToTrack);
     }
 
+    /**
+     * @return the barriers of this sequencer with their own wait strategy.
+     */
+    BarrierWaitStrategies getBarrierWaitStrategies()
+    {
+        return barrierWaitStrategies;
+    }
+
+    /**
+     * Wake consumers blocked in the sequencer's wait strategy and in those of barriers created with
+     * {@link RingBuffer#newBarrier(WaitStrategy, Sequence...)}.
+     */
+    protected final void signalAllWhenBlocking()
+    {
+        barrierWaitStrategies.signalAllWhenBlocking();
+    }
+
     /**
      * Creates an event poller for this sequence that will use the supplied data provider and
      * gating sequences.
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>{@link AsyncEventSink} backed by a {@link RingBuffer}.  Publications that cannot claim a sequence
+ * immediately are queued in arrival order and retried whenever this publisher is next used or
+ * {@link #poll()} is called, so no thread is ever parked waiting for capacity.</p>
+ *
+ * <p>By default a {@link PublishFuture} completes as soon as its event has been published.  If a
+ * completion sequence is supplied (typically the sequence of the last consumer in the chain) the future
+ * instead completes once that sequence has passed the published event.</p>
+ *
+ * <p>The caller owns the polling: an event loop should call {@link #poll()} on each iteration while
+ * {@link #hasPending()} returns true.</p>
+ * 基于RingBuffer的异步发布者. 无法立即申请到序号的发布请求按到达顺序排队, 在下一次发布或poll()时重试.
+ *
+ * @param <E> event implementation storing the data for sharing during exchange or parallel coordination of an event.
+ */
+public final class AsyncEventPublisher<E> implements AsyncEventSink<E>
+{
+    private final RingBuffer<E> ringBuffer;
+    private final Sequence completionSequence;
+    private final int maxPending;
+    private final Queue<Publication<E>> pending = new ConcurrentLinkedQueue<Publication<E>>();
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    // only accessed by the thread holding the draining flag
+    private final ArrayDeque<Publication<E>> awaitingCompletion = new ArrayDeque<Publication<E>>();
+
+    /**
+     * Create a publisher whose futures complete once the event has been published, with no bound on the
+     * number of queued publications.
+     *
+     * @param ringBuffer to publish to.
+     */
+    public AsyncEventPublisher(final RingBuffer<E> ringBuffer)
+    {
+        this(ringBuffer, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a publisher whose futures complete once the event has been processed.
+     *
+     * @param ringBuffer         to publish to.
+     * @param completionSequence futures complete once this sequence reaches the published sequence,
+     *                           null to complete on publication.
+     * @param maxPending         maximum number of publications that may be queued waiting for capacity, once
+     *                           reached further publications fail with an {@link InsufficientCapacityException}.
+     */
+    public AsyncEventPublisher(final RingBuffer<E> ringBuffer, final Sequence completionSequence, final int maxPending)
+    {
+        if (maxPending < 1)
+        {
+            throw new IllegalArgumentException("maxPending must be > 0");
+        }
+
+        this.ringBuffer = ringBuffer;
+        this.completionSequence = completionSequence;
+        this.maxPending = maxPending;
+    }
+
+    @Override
+    public PublishFuture publishEvent(final EventTranslator<E> translator)
+    {
+        return enqueue(new Publication<E>()
+        {
+            @Override
+            void translateTo(final E event, final long sequence)
+            {
+                translator.translateTo(event, sequence);
+            }
+        });
+    }
+
+    @Override
+    public <A> PublishFuture publishEvent(final EventTranslatorOneArg<E, A> translator, final A arg0)
+    {
+        return enqueue(new Publication<E>()
+        {
+            @Override
+            void translateTo(final E event, final long sequence)
+            {
+                translator.translateTo(event, sequence, arg0);
+            }
+        });
+    }
+
+    @Override
+    public <A, B> PublishFuture publishEvent(
+        final EventTranslatorTwoArg<E, A, B> translator, final A arg0, final B arg1)
+    {
+        return enqueue(new Publication<E>()
+        {
+            @Override
+            void translateTo(final E event, final long sequence)
+            {
+                translator.translateTo(event, sequence, arg0, arg1);
+            }
+        });
+    }
+
+    @Override
+    public <A, B, C> PublishFuture publishEvent(
+        final EventTranslatorThreeArg<E, A, B, C> translator, final A arg0, final B arg1, final C arg2)
+    {
+        return enqueue(new Publication<E>()
+        {
+            @Override
+            void translateTo(final E event, final long sequence)
+            {
+                translator.translateTo(event, sequence, arg0, arg1, arg2);
+            }
+        });
+    }
+
+    @Override
+    public PublishFuture publishEvent(final EventTranslatorVararg<E> translator, final Object... args)
+    {
+        return enqueue(new Publication<E>()
+        {
+            @Override
+            void translateTo(final E event, final long sequence)
+            {
+                translator.translateTo(event, sequence, args);
+            }
+        });
+    }
+
+    /**
+     * Publish as many queued events as the ring buffer has capacity for and complete any futures whose
+     * completion condition has been met.  Only one thread drains at a time, concurrent callers return
+     * immediately.
+     *
+     * @return the number of futures completed by this call.
+     */
+    public int poll()
+    {
+        int completed = 0;
+        do
+        {
+            if (!draining.compareAndSet(false, true))
+            {
+                return completed;
+            }
+
+            try
+            {
+                completed += drain();
+            }
+            finally
+            {
+                draining.set(false);
+            }
+        }
+        // a publication may have been queued after we finished draining but before the flag was released
+        while (!pending.isEmpty() && ringBuffer.hasAvailableCapacity(1));
+
+        return completed;
+    }
+
+    /**
+     * @return true if there are publications waiting for capacity or for the completion sequence.
+     */
+    public boolean hasPending()
+    {
+        return pendingCount.get() != 0;
+    }
+
+    /**
+     * @return the number of publications waiting for capacity or for the completion sequence.
+     */
+    public int getPendingCount()
+    {
+        return pendingCount.get();
+    }
+
+    private PublishFuture enqueue(final Publication<E> publication)
+    {
+        if (pendingCount.incrementAndGet() > maxPending)
+        {
+            pendingCount.decrementAndGet();
+            publication.completeExceptionally(Sequencer.INITIAL_CURSOR_VALUE, InsufficientCapacityException.INSTANCE);
+            return publication;
+        }
+
+        pending.offer(publication);
+        poll();
+
+        return publication;
+    }
+
+    private int drain()
+    {
+        int completed = 0;
+        Publication<E> publication;
+        while (null != (publication = pending.peek()))
+        {
+            if (!publication.startClaim())
+            {
+                // cancelled while queued
+                pending.poll();
+                pendingCount.decrementAndGet();
+                continue;
+            }
+
+            final long sequence;
+            try
+            {
+                sequence = ringBuffer.tryNext();
+            }
+            catch (final InsufficientCapacityException e)
+            {
+                publication.abortClaim();
+                break;
+            }
+
+            pending.poll();
+            try
+            {
+                publication.translateTo(ringBuffer.get(sequence), sequence);
+            }
+            catch (final Throwable ex)
+            {
+                ringBuffer.publish(sequence);
+                pendingCount.decrementAndGet();
+                publication.completeExceptionally(sequence, ex);
+                completed++;
+                continue;
+            }
+
+            ringBuffer.publish(sequence);
+            publication.published(sequence);
+
+            if (null == completionSequence)
+            {
+                pendingCount.decrementAndGet();
+                publication.complete(null);
+                completed++;
+            }
+            else
+            {
+                awaitingCompletion.offer(publication);
+            }
+        }
+
+        if (null != completionSequence && !awaitingCompletion.isEmpty())
+        {
+            final long processed = completionSequence.get();
+            while (null != (publication = awaitingCompletion.peek()) && publication.getSequence() <= processed)
+            {
+                awaitingCompletion.poll();
+                pendingCount.decrementAndGet();
+                publication.complete(null);
+                completed++;
+            }
+        }
+
+        return completed;
+    }
+
+    /**
+     * A queued publication, captures the translator and its arguments until a sequence can be claimed.
+     */
+    abstract static class Publication<E> extends PublishFuture
+    {
+        abstract void translateTo(E event, long sequence);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+/**
+ * Non-blocking variant of {@link EventSink}.  Rather than parking the calling thread when the ring buffer
+ * is full, publications are queued and a {@link PublishFuture} is returned that completes once the event
+ * has been published (or processed, depending on the implementation).
+ * EventSink的异步版本, RingBuffer满时不阻塞发布线程, 而是返回PublishFuture.
+ *
+ * @param <E> event implementation storing the data for sharing during exchange or parallel coordination of an event.
+ */
+public interface AsyncEventSink<E>
+{
+    /**
+     * Publishes an event to the ring buffer once capacity is available.
+     *
+     * @param translator The user specified translation for the event
+     * @return a future that completes when the publication completes.
+     * @see EventSink#publishEvent(EventTranslator)
+     */
+    PublishFuture publishEvent(EventTranslator<E> translator);
+
+    /**
+     * Allows one user supplied argument.
+     *
+     * @param translator The user specified translation for the event
+     * @param arg0       A user supplied argument.
+     * @return a future that completes when the publication completes.
+     * @see #publishEvent(EventTranslator)
+     */
+    <A> PublishFuture publishEvent(EventTranslatorOneArg<E, A> translator, A arg0);
+
+    /**
+     * Allows two user supplied arguments.
+     *
+     * @param translator The user specified translation for the event
+     * @param arg0       A user supplied argument.
+     * @param arg1       A user supplied argument.
+     * @return a future that completes when the publication completes.
+     * @see #publishEvent(EventTranslator)
+     */
+    <A, B> PublishFuture publishEvent(EventTranslatorTwoArg<E, A, B> translator, A arg0, B arg1);
+
+    /**
+     * Allows three user supplied arguments
+     *
+     * @param translator The user specified translation for the event
+     * @param arg0       A user supplied argument.
+     * @param arg1       A user supplied argument.
+     * @param arg2       A user supplied argument.
+     * @return a future that completes when the publication completes.
+     * @see #publishEvent(EventTranslator)
+     */
+    <A, B, C> PublishFuture publishEvent(EventTranslatorThreeArg<E, A, B, C> translator, A arg0, B arg1, C arg2);
+
+    /**
+     * Allows a variable number of user supplied arguments
+     *
+     * @param translator The user specified translation for the event
+     * @param args       User supplied arguments.
+     * @return a future that completes when the publication completes.
+     * @see #publishEvent(EventTranslator)
+     */
+    PublishFuture publishEvent(EventTranslatorVararg<E> translator, Object... args);
+}
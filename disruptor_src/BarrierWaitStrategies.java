@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Creates the barriers of a sequencer that wait with their own strategy, see
+ * {@link RingBuffer#newBarrier(WaitStrategy, Sequence...)}, and signals them together with the sequencer's own
+ * strategy.  Each sequencer supporting such barriers owns one and calls {@link #signalAllWhenBlocking()} after each
+ * publication in place of its wait strategy's.</p>
+ *
+ * <p>Each blocking strategy is wrapped with a count of the consumers waiting in it for the cursor, and is only
+ * signalled while that count is not zero, so producers pay for waking blocking consumers only when one is waiting.
+ * Consumers only update the count when the sequence they ask for has not been published yet.
+ * Strategies that never block, such as {@link BusySpinWaitStrategy}, are not registered at all, so consumers using
+ * them pay nothing either.</p>
+ * 为各个屏障单独指定的等待策略. 阻塞型的策略会统计正在等待的消费者数量, 只有确实有消费者在等待时生产者才去唤醒,
+ * 自旋型的策略不需要唤醒, 因此不登记.
+ */
+final class BarrierWaitStrategies
+{
+    private final Sequencer sequencer;
+    private final Sequence cursor;
+    private final WaitStrategy waitStrategy;
+    private volatile CountingWaitStrategy[] strategies = new CountingWaitStrategy[0];
+    // written before the waiter counts are read, see signalAllWhenBlocking()
+    private volatile int fence;
+
+    /**
+     * @param sequencer    owning the barriers.
+     * @param cursor       of the sequencer.
+     * @param waitStrategy the sequencer's own strategy.
+     */
+    BarrierWaitStrategies(final Sequencer sequencer, final Sequence cursor, final WaitStrategy waitStrategy)
+    {
+        this.sequencer = sequencer;
+        this.cursor = cursor;
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Create a barrier on the sequencer that waits with its own strategy.
+     *
+     * @param waitStrategy     used by consumers waiting on the barrier.
+     * @param sequencesToTrack the additional sequences to track
+     * @return A sequence barrier that will track the specified sequences.
+     */
+    SequenceBarrier newBarrier(final WaitStrategy waitStrategy, final Sequence... sequencesToTrack)
+    {
+        if (waitStrategy == this.waitStrategy)
+        {
+            return sequencer.newBarrier(sequencesToTrack);
+        }
+
+        return new ProcessingSequenceBarrier(sequencer, register(waitStrategy), cursor, sequencesToTrack);
+    }
+
+    private synchronized WaitStrategy register(final WaitStrategy waitStrategy)
+    {
+        if (waitStrategy instanceof BusySpinWaitStrategy ||
+            waitStrategy instanceof YieldingWaitStrategy ||
+            waitStrategy instanceof SleepingWaitStrategy)
+        {
+            return waitStrategy;
+        }
+
+        final CountingWaitStrategy[] current = strategies;
+        for (final CountingWaitStrategy strategy : current)
+        {
+            if (strategy.delegate == waitStrategy)
+            {
+                return strategy;
+            }
+        }
+
+        final CountingWaitStrategy strategy = new CountingWaitStrategy(waitStrategy);
+        final CountingWaitStrategy[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = strategy;
+        strategies = updated;
+        return strategy;
+    }
+
+    /**
+     * Wake the consumers waiting in the sequencer's strategy and in any registered one.  Must be called after the
+     * publication is visible.
+     */
+    void signalAllWhenBlocking()
+    {
+        waitStrategy.signalAllWhenBlocking();
+
+        final CountingWaitStrategy[] strategies = this.strategies;
+        if (0 == strategies.length)
+        {
+            return;
+        }
+
+        // the volatile store orders the publication before the loads of the waiter counts, pairing with the
+        // increment in waitFor, so a consumer either sees the new cursor or is seen waiting
+        fence = 0;
+        for (int i = 0, n = strategies.length; i < n; i++)
+        {
+            strategies[i].signalIfWaiting();
+        }
+    }
+
+    private static final class CountingWaitStrategy implements WaitStrategy
+    {
+        private final WaitStrategy delegate;
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        CountingWaitStrategy(final WaitStrategy delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long waitFor(
+            final long sequence,
+            final Sequence cursor,
+            final Sequence dependentSequence,
+            final SequenceBarrier barrier) throws AlertException, InterruptedException, TimeoutException
+        {
+            if (cursor.get() >= sequence)
+            {
+                // blocking strategies only wait for a signal while the cursor is behind, so this call is not a waiter
+                return delegate.waitFor(sequence, cursor, dependentSequence, barrier);
+            }
+
+            waiters.incrementAndGet();
+            try
+            {
+                return delegate.waitFor(sequence, cursor, dependentSequence, barrier);
+            }
+            finally
+            {
+                waiters.decrementAndGet();
+            }
+        }
+
+        void signalIfWaiting()
+        {
+            if (0 != waiters.get())
+            {
+                delegate.signalAllWhenBlocking();
+            }
+        }
+
+        @Override
+        public void signalAllWhenBlocking()
+        {
+            // called by the barrier on alert, which must always wake its consumer
+            delegate.signalAllWhenBlocking();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Recovers sequences that were claimed from a multi producer {@link RingBuffer} but never published, for
+ * example because the producer thread died or threw between <code>next()</code> and <code>publish()</code>.
+ * Consumers stop at the first unpublished sequence, so without recovery such a gap stalls every consumer, and
+ * then every producer, for good.</p>
+ *
+ * <p>The watchdog is run periodically, e.g. from a {@link java.util.concurrent.ScheduledExecutorService}.  Each
+ * run finds the first unpublished sequence at or below the cursor.  The claim is treated as a lease that starts
+ * when the gap is first seen: if the same sequence is still unpublished after the deadline, the watchdog writes a
+ * tombstone into its event with the supplied translator and publishes it.  Handlers are expected to recognise and
+ * ignore tombstones.  A faulty producer then causes a stall bounded by the deadline instead of an outage.</p>
+ *
+ * <p>The deadline must be longer than any producer legitimately holds a claim, as a producer that publishes after
+ * its claim has been recovered overwrites an event consumers may already be reading.</p>
+ * 多生产者模式下, 若生产者在next()和publish()之间异常退出, 该序号永远不会被发布, 所有消费者都会停在这个空洞处.
+ * 看门狗定期检查第一个未发布的序号, 若超过期限仍未发布, 就写入一个墓碑事件并代为发布, 使停顿时间有上限.
+ *
+ * @param <E> event implementation storing the data for sharing during exchange or parallel coordination of an event.
+ */
+public final class ClaimWatchdog<E> implements Runnable
+{
+    private final RingBuffer<E> ringBuffer;
+    private final MultiProducerSequencer sequencer;
+    private final EventTranslator<E> tombstoneTranslator;
+    private final long deadlineNanos;
+
+    // all sequences below scanFrom are known to be published
+    private long scanFrom;
+    // the lease being timed: sequences up to leaseCursor were already claimed when it started
+    private long leaseCursor = Sequencer.INITIAL_CURSOR_VALUE;
+    private long leaseStartNanos;
+    private long recoveredCount = 0;
+
+    /**
+     * @param ringBuffer          a ring buffer created with a multi producer sequencer.
+     * @param tombstoneTranslator marks an abandoned event so that handlers can skip it.
+     * @param deadline            how long a sequence may stay claimed but unpublished.
+     * @param unit                of the deadline.
+     */
+    public ClaimWatchdog(
+        final RingBuffer<E> ringBuffer,
+        final EventTranslator<E> tombstoneTranslator,
+        final long deadline,
+        final TimeUnit unit)
+    {
+        if (!(ringBuffer.sequencer instanceof MultiProducerSequencer))
+        {
+            throw new IllegalArgumentException("ringBuffer must use a MultiProducerSequencer");
+        }
+
+        this.ringBuffer = ringBuffer;
+        this.sequencer = (MultiProducerSequencer) ringBuffer.sequencer;
+        this.tombstoneTranslator = tombstoneTranslator;
+        this.deadlineNanos = unit.toNanos(deadline);
+        this.scanFrom = sequencer.getMinimumSequence() + 1;
+    }
+
+    /**
+     * Same as {@link #check()}.
+     */
+    @Override
+    public void run()
+    {
+        check();
+    }
+
+    /**
+     * Look for an abandoned claim and publish tombstones for any that have passed the deadline.
+     *
+     * @return the number of sequences recovered by this check.
+     */
+    public synchronized int check()
+    {
+        int recovered = 0;
+        while (true)
+        {
+            final long cursor = sequencer.getCursor();
+            // sequences more than a lap behind have been published, or the ring buffer could not have wrapped
+            scanFrom = Math.max(scanFrom, cursor - ringBuffer.getBufferSize() + 1);
+
+            final long firstUnpublished = sequencer.getHighestPublishedSequence(scanFrom, cursor) + 1;
+            scanFrom = firstUnpublished;
+            if (firstUnpublished > cursor)
+            {
+                leaseCursor = Sequencer.INITIAL_CURSOR_VALUE;
+                return recovered;
+            }
+
+            final long now = System.nanoTime();
+            if (firstUnpublished > leaseCursor)
+            {
+                // a new gap, its lease covers everything claimed so far, so the rest of an abandoned next(n)
+                // expires with it while later claims get their own deadline
+                leaseCursor = cursor;
+                leaseStartNanos = now;
+                return recovered;
+            }
+
+            if (now - leaseStartNanos < deadlineNanos)
+            {
+                return recovered;
+            }
+
+            try
+            {
+                tombstoneTranslator.translateTo(ringBuffer.get(firstUnpublished), firstUnpublished);
+            }
+            finally
+            {
+                sequencer.publish(firstUnpublished);
+            }
+
+            recovered++;
+            recoveredCount++;
+        }
+    }
+
+    /**
+     * @return the number of sequences recovered since the watchdog was created.
+     */
+    public synchronized long getRecoveredCount()
+    {
+        return recoveredCount;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.Arrays;
+
+/**
+ * <p>Publishes single events from many threads by flat combining.  Instead of each producer claiming and publishing
+ * its own sequence, which makes every producer contend on the cursor of a {@link MultiProducerSequencer} and write
+ * its own availability flag, a producer posts its translator to a padded slot of its own.  Whichever producer
+ * acquires the combiner role collects all posted requests, claims one range for them with
+ * {@link RingBuffer#next(int)}, runs the translators and publishes the range with
+ * {@link RingBuffer#publish(long, long)}, then marks the requests done.  The others spin on their slot meanwhile.</p>
+ *
+ * <p>Under heavy contention one claim and one publication serve a whole batch of producers; without contention a
+ * producer simply combines its own request.  Events are published in the order the combiner collects them, which
+ * preserves each producer's order.  If a translator throws, its event is still published, as with
+ * {@link RingBuffer#publishEvent(EventTranslator)}, and the exception is rethrown to the producer that posted it.</p>
+ *
+ * <p>A slot is allocated for each thread on its first publication and is kept while the thread is alive.  The
+ * slots of threads that have terminated are only reclaimed when another thread registers, until then the combiner
+ * keeps scanning them, so threads that publish through a long lived publisher should be pooled.</p>
+ * 平面合并(flat combining)发布器: 每个生产者线程把请求放到自己的带填充的槽位上, 获得合并者角色的线程收集所有请求,
+ * 一次next(n)申请整段序号, 执行所有translator后用publish(lo, hi)一次发布, 减少对cursor的竞争.
+ *
+ * @param <E> event implementation storing the data for sharing during exchange or parallel coordination of an event.
+ */
+public final class CombiningPublisher<E>
+{
+    private static final long EMPTY = 0;
+    private static final long POSTED = 1;
+    private static final long DONE = 2;
+
+    private static final int SPIN_TRIES = 100;
+
+    private final RingBuffer<E> ringBuffer;
+    private final int maxBatchSize;
+    // 0 when no thread is combining, padded as every producer polls it
+    private final Sequence combiner = new Sequence(0);
+    private volatile Slot[] slots = new Slot[0];
+    // only used by the combiner
+    private Slot[] batch = new Slot[0];
+
+    private final ThreadLocal<Slot> threadSlot = new ThreadLocal<Slot>()
+    {
+        @Override
+        protected Slot initialValue()
+        {
+            return register();
+        }
+    };
+
+    /**
+     * @param ringBuffer to publish to.
+     */
+    public CombiningPublisher(final RingBuffer<E> ringBuffer)
+    {
+        this.ringBuffer = ringBuffer;
+        this.maxBatchSize = ringBuffer.getBufferSize();
+    }
+
+    /**
+     * Publish an event, possibly translated and published by another producer thread.
+     *
+     * @param translator The user specified translation for the event
+     * @see EventSink#publishEvent(EventTranslator)
+     */
+    public void publishEvent(final EventTranslator<E> translator)
+    {
+        final Slot slot = threadSlot.get();
+        slot.translator = translator;
+        slot.oneArg = false;
+        awaitCompletion(slot);
+    }
+
+    /**
+     * Allows one user supplied argument.
+     *
+     * @param translator The user specified translation for the event
+     * @param arg0       A user supplied argument.
+     * @see #publishEvent(EventTranslator)
+     */
+    public <A> void publishEvent(final EventTranslatorOneArg<E, A> translator, final A arg0)
+    {
+        final Slot slot = threadSlot.get();
+        slot.translator = translator;
+        slot.arg0 = arg0;
+        slot.oneArg = true;
+        awaitCompletion(slot);
+    }
+
+    private void awaitCompletion(final Slot slot)
+    {
+        slot.state.set(POSTED);
+
+        int tries = SPIN_TRIES;
+        while (DONE != slot.state.get())
+        {
+            if (0 == combiner.get() && combiner.compareAndSet(0, 1))
+            {
+                try
+                {
+                    combine();
+                }
+                finally
+                {
+                    combiner.set(0);
+                }
+            }
+            else if (0 == --tries)
+            {
+                tries = SPIN_TRIES;
+                Thread.yield();
+            }
+        }
+
+        final Throwable failure = slot.failure;
+        slot.translator = null;
+        slot.arg0 = null;
+        slot.failure = null;
+        slot.state.set(EMPTY);
+
+        if (null != failure)
+        {
+            if (failure instanceof RuntimeException)
+            {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error)
+            {
+                throw (Error) failure;
+            }
+            throw new RuntimeException(failure);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void combine()
+    {
+        final Slot[] slots = this.slots;
+        if (batch.length < slots.length)
+        {
+            batch = new Slot[slots.length];
+        }
+
+        final Slot[] batch = this.batch;
+        int n = 0;
+        for (int i = 0; i < slots.length && n < maxBatchSize; i++)
+        {
+            if (POSTED == slots[i].state.get())
+            {
+                batch[n++] = slots[i];
+            }
+        }
+
+        if (0 == n)
+        {
+            return;
+        }
+
+        final long hi = ringBuffer.next(n);
+        final long lo = hi - (n - 1);
+        try
+        {
+            for (int i = 0; i < n; i++)
+            {
+                final Slot slot = batch[i];
+                final long sequence = lo + i;
+                try
+                {
+                    if (slot.oneArg)
+                    {
+                        ((EventTranslatorOneArg<E, Object>) slot.translator)
+                            .translateTo(ringBuffer.get(sequence), sequence, slot.arg0);
+                    }
+                    else
+                    {
+                        ((EventTranslator<E>) slot.translator).translateTo(ringBuffer.get(sequence), sequence);
+                    }
+                }
+                catch (final Throwable t)
+                {
+                    slot.failure = t;
+                }
+            }
+        }
+        finally
+        {
+            ringBuffer.publish(lo, hi);
+            for (int i = 0; i < n; i++)
+            {
+                batch[i].state.set(DONE);
+                batch[i] = null;
+            }
+        }
+    }
+
+    private synchronized Slot register()
+    {
+        final Slot slot = new Slot(Thread.currentThread());
+        final Slot[] current = slots;
+        final Slot[] updated = new Slot[current.length + 1];
+        int n = 0;
+        for (final Slot other : current)
+        {
+            // reclaim the slots of terminated threads, which can no longer post
+            if (other.owner.isAlive() || EMPTY != other.state.get())
+            {
+                updated[n++] = other;
+            }
+        }
+        updated[n++] = slot;
+        slots = n == updated.length ? updated : Arrays.copyOf(updated, n);
+        return slot;
+    }
+
+    /**
+     * @return the number of threads that have published through this publisher, excluding terminated threads
+     * whose slots have been reclaimed.
+     */
+    public int getProducerCount()
+    {
+        return slots.length;
+    }
+
+    private static class SlotPad
+    {
+        protected long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private static class SlotFields extends SlotPad
+    {
+        // padded, the owner and the combiner both poll it
+        final Sequence state = new Sequence(EMPTY);
+        final Thread owner;
+        Object translator;
+        Object arg0;
+        boolean oneArg;
+        Throwable failure;
+
+        SlotFields(final Thread owner)
+        {
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * Padded on both sides, as the owner writes the request and the combiner the failure.
+     */
+    private static final class Slot extends SlotFields
+    {
+        protected long p9, p10, p11, p12, p13, p14, p15;
+
+        Slot(final Thread owner)
+        {
+            super(owner);
+        }
+    }
+}
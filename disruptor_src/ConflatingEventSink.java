@@ -0,0 +1,319 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.Arrays;
+
+import sun.misc.Unsafe;
+
+import com.lmax.disruptor.util.Util;
+
+/**
+ * <p>Publishes keyed events to a {@link RingBuffer}, keeping only the latest value for each key while the consumer
+ * lags.  If the previous event published for a key has not been picked up by the consumer yet, it is updated in
+ * place rather than a new sequence being claimed, so the number of events in the ring buffer, and the work of a
+ * lagging consumer, is bounded by the number of distinct keys instead of the rate of updates.</p>
+ *
+ * <p>The sink keeps a primitive open addressing index from key to the sequence of its latest event, and a state for
+ * each slot of the ring buffer.  The consumer must process the events through the handler returned by
+ * {@link #conflatingHandler(EventHandler)}, which marks an event as being read before handing it on; from then on an
+ * update for its key claims a new sequence.  If the consumer reaches an event while it is being updated it waits
+ * for the translator to finish.</p>
+ *
+ * <p>Publishing methods must only be called from a single thread, and the ring buffer must have exactly one
+ * consumer wrapped with {@link #conflatingHandler(EventHandler)}.  Other consumers reading the events in place may
+ * see them while they are updated.</p>
+ * 按key合并事件的发布器: 若某个key上一次发布的事件还未被消费者读取, 就原地更新该事件而不是申请新序号,
+ * 从而使环形缓冲区的占用和慢消费者的工作量取决于key的数量而不是更新频率. 仅支持单个发布线程和单个消费者.
+ *
+ * @param <E> event implementation storing the data for sharing during exchange or parallel coordination of an event.
+ */
+public final class ConflatingEventSink<E>
+{
+    private static final Unsafe UNSAFE = Util.getUnsafe();
+    private static final long BASE = UNSAFE.arrayBaseOffset(int[].class);
+    private static final long SCALE = UNSAFE.arrayIndexScale(int[].class);
+
+    private static final int CONSUMED = 0;
+    private static final int PUBLISHED = 1;
+    private static final int WRITING = 2;
+    private static final int READING = 3;
+
+    private static final long EMPTY = -1L;
+
+    private final RingBuffer<E> ringBuffer;
+    private final int indexMask;
+    // state of the event in each slot, shared with the consumer
+    private final int[] states;
+
+    // producer only: key of the event in each slot, and the key to sequence index
+    private final long[] slotKeys;
+    private final long[] indexKeys;
+    private final long[] indexSequences;
+    private final int indexMaskOfIndex;
+    private boolean conflated;
+    private long conflatedCount = 0;
+
+    /**
+     * @param ringBuffer to publish to, it must not be published to other than through this sink.
+     */
+    public ConflatingEventSink(final RingBuffer<E> ringBuffer)
+    {
+        final int bufferSize = ringBuffer.getBufferSize();
+        this.ringBuffer = ringBuffer;
+        this.indexMask = bufferSize - 1;
+        this.states = new int[bufferSize];
+        this.slotKeys = new long[bufferSize];
+
+        // at most bufferSize keys are indexed, keep the load factor at or below one half
+        final int indexSize = bufferSize << 1;
+        this.indexKeys = new long[indexSize];
+        this.indexSequences = new long[indexSize];
+        this.indexMaskOfIndex = indexSize - 1;
+        Arrays.fill(indexSequences, EMPTY);
+    }
+
+    /**
+     * Publish an event for a key, or update the unconsumed event previously published for it.
+     *
+     * @param key        identifies the events that supersede each other.
+     * @param translator The user specified translation for the event, called with the sequence of the event, which
+     *                   is the sequence of the previous event when it is updated in place.
+     * @see EventSink#publishEvent(EventTranslator)
+     */
+    public void publishEvent(final long key, final EventTranslator<E> translator)
+    {
+        final long sequence = claim(key);
+        try
+        {
+            translator.translateTo(ringBuffer.get(sequence), sequence);
+        }
+        finally
+        {
+            publish(sequence);
+        }
+    }
+
+    /**
+     * Allows one user supplied argument.
+     *
+     * @param key        identifies the events that supersede each other.
+     * @param translator The user specified translation for the event
+     * @param arg0       A user supplied argument.
+     * @see #publishEvent(long, EventTranslator)
+     */
+    public <A> void publishEvent(final long key, final EventTranslatorOneArg<E, A> translator, final A arg0)
+    {
+        final long sequence = claim(key);
+        try
+        {
+            translator.translateTo(ringBuffer.get(sequence), sequence, arg0);
+        }
+        finally
+        {
+            publish(sequence);
+        }
+    }
+
+    /**
+     * Allows two user supplied arguments.
+     *
+     * @param key        identifies the events that supersede each other.
+     * @param translator The user specified translation for the event
+     * @param arg0       A user supplied argument.
+     * @param arg1       A user supplied argument.
+     * @see #publishEvent(long, EventTranslator)
+     */
+    public <A, B> void publishEvent(
+        final long key, final EventTranslatorTwoArg<E, A, B> translator, final A arg0, final B arg1)
+    {
+        final long sequence = claim(key);
+        try
+        {
+            translator.translateTo(ringBuffer.get(sequence), sequence, arg0, arg1);
+        }
+        finally
+        {
+            publish(sequence);
+        }
+    }
+
+    /**
+     * Wrap the consumer's handler so that events it has started to read are no longer updated in place.
+     *
+     * @param eventHandler the consumer's handler.
+     * @return the handler to register with the ring buffer's single consumer.
+     */
+    public EventHandler<E> conflatingHandler(final EventHandler<? super E> eventHandler)
+    {
+        return new ConflatingEventHandler<E>(this, eventHandler);
+    }
+
+    /**
+     * @return the number of publications that updated an unconsumed event instead of claiming a new sequence.
+     */
+    public long getConflatedCount()
+    {
+        return conflatedCount;
+    }
+
+    private long claim(final long key)
+    {
+        final int position = find(key);
+        final long existing = indexSequences[position];
+        if (EMPTY != existing && UNSAFE.compareAndSwapInt(states, address(existing), PUBLISHED, WRITING))
+        {
+            conflated = true;
+            conflatedCount++;
+            return existing;
+        }
+
+        final long sequence = ringBuffer.next();
+
+        // the slot's previous event is consumed, so drop it from the index unless it was superseded already
+        final int slot = (int) sequence & indexMask;
+        if (sequence > indexMask)
+        {
+            final long previousKey = slotKeys[slot];
+            final int previous = find(previousKey);
+            if (indexSequences[previous] == sequence - (indexMask + 1))
+            {
+                remove(previous);
+            }
+        }
+        slotKeys[slot] = key;
+
+        // removal may have shifted the key's entry, look it up again
+        final int insertAt = find(key);
+        indexKeys[insertAt] = key;
+        indexSequences[insertAt] = sequence;
+
+        UNSAFE.putOrderedInt(states, address(sequence), WRITING);
+        conflated = false;
+        return sequence;
+    }
+
+    private void publish(final long sequence)
+    {
+        UNSAFE.putIntVolatile(states, address(sequence), PUBLISHED);
+        if (!conflated)
+        {
+            ringBuffer.publish(sequence);
+        }
+    }
+
+    /**
+     * Called by the consumer before it reads an event, waits while the event is updated in place.
+     */
+    void beginRead(final long sequence)
+    {
+        final long address = address(sequence);
+        while (!UNSAFE.compareAndSwapInt(states, address, PUBLISHED, READING))
+        {
+            Thread.yield();
+        }
+    }
+
+    void endRead(final long sequence)
+    {
+        UNSAFE.putOrderedInt(states, address(sequence), CONSUMED);
+    }
+
+    private int find(final long key)
+    {
+        int position = hash(key) & indexMaskOfIndex;
+        while (EMPTY != indexSequences[position] && indexKeys[position] != key)
+        {
+            position = (position + 1) & indexMaskOfIndex;
+        }
+
+        return position;
+    }
+
+    private void remove(int position)
+    {
+        // backward shift deletion, keeps probe sequences unbroken without tombstones
+        indexSequences[position] = EMPTY;
+        int next = (position + 1) & indexMaskOfIndex;
+        while (EMPTY != indexSequences[next])
+        {
+            final int home = hash(indexKeys[next]) & indexMaskOfIndex;
+            if (((next - home) & indexMaskOfIndex) >= ((next - position) & indexMaskOfIndex))
+            {
+                indexKeys[position] = indexKeys[next];
+                indexSequences[position] = indexSequences[next];
+                indexSequences[next] = EMPTY;
+                position = next;
+            }
+            next = (next + 1) & indexMaskOfIndex;
+        }
+    }
+
+    private static int hash(final long key)
+    {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private long address(final long sequence)
+    {
+        return BASE + (((int) sequence) & indexMask) * SCALE;
+    }
+
+    private static final class ConflatingEventHandler<E> implements EventHandler<E>, LifecycleAware
+    {
+        private final ConflatingEventSink<E> sink;
+        private final EventHandler<? super E> eventHandler;
+
+        ConflatingEventHandler(final ConflatingEventSink<E> sink, final EventHandler<? super E> eventHandler)
+        {
+            this.sink = sink;
+            this.eventHandler = eventHandler;
+        }
+
+        @Override
+        public void onEvent(final E event, final long sequence, final boolean endOfBatch) throws Exception
+        {
+            sink.beginRead(sequence);
+            try
+            {
+                eventHandler.onEvent(event, sequence, endOfBatch);
+            }
+            finally
+            {
+                sink.endRead(sequence);
+            }
+        }
+
+        @Override
+        public void onStart()
+        {
+            if (eventHandler instanceof LifecycleAware)
+            {
+                ((LifecycleAware) eventHandler).onStart();
+            }
+        }
+
+        @Override
+        public void onShutdown()
+        {
+            if (eventHandler instanceof LifecycleAware)
+            {
+                ((LifecycleAware) eventHandler).onShutdown();
+            }
+        }
+    }
+}
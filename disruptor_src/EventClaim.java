@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.io.Closeable;
+
+/**
+ * <p>Reusable claim on one or more sequences of a {@link RingBuffer}, for publishing without a translator.
+ * Closing the claim publishes the claimed events, so closing it in a finally block means the publish cannot be
+ * forgotten:</p>
+ *
+ * <pre>
+ * <code>final EventClaim&lt;MyEvent&gt; claim = ringBuffer.newClaim(); // kept by the producer
+ * ...
+ * claim.next();
+ * try
+ * {
+ *     claim.event().setValue(value);
+ * }
+ * finally
+ * {
+ *     claim.close();
+ * }</code>
+ * </pre>
+ *
+ * <p>A claim is a flyweight owned by one producer thread and reused for every publication, so publishing
+ * allocates nothing, unlike a capturing translator which is allocated per call.  The producer keeps its own
+ * claim, created with {@link RingBuffer#newClaim()} or {@link #EventClaim(RingBuffer)}, so the claim never
+ * outlives the producer's use of the ring buffer.</p>
+ * 可复用的序号申请对象(flyweight), 由生产者自己持有, 在finally中关闭时发布已申请的事件, 发布过程不产生任何对象.
+ *
+ * @param <E> implementation storing the data for sharing during exchange or parallel coordination of an event.
+ */
+public final class EventClaim<E> implements Closeable
+{
+    private final RingBuffer<E> ringBuffer;
+    private long lo;
+    private long hi;
+    private boolean open = false;
+
+    /**
+     * @param ringBuffer to claim sequences from.
+     */
+    public EventClaim(final RingBuffer<E> ringBuffer)
+    {
+        this.ringBuffer = ringBuffer;
+    }
+
+    /**
+     * Claim the next sequence, waiting for capacity if necessary.
+     *
+     * @return this claim.
+     */
+    public EventClaim<E> next()
+    {
+        checkClosed();
+        hi = ringBuffer.next();
+        return opened(1);
+    }
+
+    /**
+     * Claim the next <code>n</code> sequences, waiting for capacity if necessary.
+     *
+     * @param n number of sequences to claim, at most the size of the ring buffer.
+     * @return this claim.
+     */
+    public EventClaim<E> next(final int n)
+    {
+        checkClosed();
+        hi = ringBuffer.next(n);
+        return opened(n);
+    }
+
+    /**
+     * Claim the next sequence if capacity is available.
+     *
+     * @return this claim.
+     * @throws InsufficientCapacityException if the ring buffer is full.
+     */
+    public EventClaim<E> tryNext() throws InsufficientCapacityException
+    {
+        checkClosed();
+        hi = ringBuffer.tryNext();
+        return opened(1);
+    }
+
+    /**
+     * Claim the next <code>n</code> sequences if capacity is available.
+     *
+     * @param n number of sequences to claim.
+     * @return this claim.
+     * @throws InsufficientCapacityException if the ring buffer does not have capacity for all of them.
+     */
+    public EventClaim<E> tryNext(final int n) throws InsufficientCapacityException
+    {
+        checkClosed();
+        hi = ringBuffer.tryNext(n);
+        return opened(n);
+    }
+
+    /**
+     * @return the event of the first (for a single claim, the only) claimed sequence.
+     */
+    public E event()
+    {
+        return ringBuffer.get(lo);
+    }
+
+    /**
+     * @param index of the event within the claim, from 0 to {@link #size()} - 1.
+     * @return the event at that index.
+     */
+    public E event(final int index)
+    {
+        return ringBuffer.get(lo + index);
+    }
+
+    /**
+     * @return the first claimed sequence.
+     */
+    public long sequence()
+    {
+        return lo;
+    }
+
+    /**
+     * @return the number of claimed sequences.
+     */
+    public int size()
+    {
+        return (int) (hi - lo + 1);
+    }
+
+    /**
+     * Publish the claimed sequences.  Does nothing if they have already been published.
+     */
+    @Override
+    public void close()
+    {
+        if (open)
+        {
+            open = false;
+            if (lo == hi)
+            {
+                ringBuffer.publish(lo);
+            }
+            else
+            {
+                ringBuffer.publish(lo, hi);
+            }
+        }
+    }
+
+    private EventClaim<E> opened(final int n)
+    {
+        lo = hi - (n - 1);
+        open = true;
+        return this;
+    }
+
+    private void checkClosed()
+    {
+        if (open)
+        {
+            throw new IllegalStateException("Previous claim has not been published");
+        }
+    }
+}
@@ -17,8 +17,6 @@ package com.lmax.disruptor;
 
 import java.util.Arrays;
 
-import com.lmax.disruptor.util.Util;
-
 /**
  * Hides a group of Sequences behind a single Sequence
  */
@@ -29,6 +27,8 @@ import com.lmax.disruptor.util.Util;
 public final class FixedSequenceGroup extends Sequence
 {
     private final Sequence[] sequences;
+    // index of the sequence that held the minimum when the cached minimum was last computed
+    private int laggard = 0;
 
     /**
      * Constructor
@@ -38,17 +38,57 @@ public final class FixedSequenceGroup extends Sequence
     public FixedSequenceGroup(Sequence[] sequences)
     {
         this.sequences = Arrays.copyOf(sequences, sequences.length);
+        rescan();
     }
 
     /**
      * Get the minimum sequence value for the group.
+     * <p>
+     * The last minimum is cached (in this sequence's own padded value) together with the index of the sequence
+     * that held it.  As the tracked sequences only move forward, every one of them is still at or above the
+     * cached minimum, so while the laggard has not moved the cached minimum is exact and only one dependent
+     * cache line is touched.  The group is rescanned once the laggard advances.
+     * 缓存上一次的最小值和最小值所在的序列(laggard). 只要laggard没有前进, 缓存值就是准确的最小值,
+     * 等待策略的自旋只需读取一个依赖序列的缓存行, 而不是扫描全部依赖序列.
      *
      * @return the minimum sequence value for the group.
      */
     @Override
     public long get()
     {
-        return Util.getMinimumSequence(sequences);
+        final Sequence[] sequences = this.sequences;
+        if (0 == sequences.length)
+        {
+            return Long.MAX_VALUE;
+        }
+
+        final long cachedMinimum = super.get();
+        if (sequences[laggard].get() == cachedMinimum)
+        {
+            return cachedMinimum;
+        }
+
+        return rescan();
+    }
+
+    private long rescan()
+    {
+        final Sequence[] sequences = this.sequences;
+        long minimum = Long.MAX_VALUE;
+        int index = 0;
+        for (int i = 0, n = sequences.length; i < n; i++)
+        {
+            final long value = sequences[i].get();
+            if (value < minimum)
+            {
+                minimum = value;
+                index = i;
+            }
+        }
+
+        laggard = index;
+        super.set(minimum);
+        return minimum;
     }
 
     @Override
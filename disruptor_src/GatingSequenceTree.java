@@ -0,0 +1,274 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.Arrays;
+
+/**
+ * <p>A two level {@link Sequence} group for gating on a large number of consumers.  Sequences are spread over
+ * leaf {@link SequenceGroup}s of at most <code>fanout</code> members, and this sequence reports the minimum of
+ * the leaf minimums.</p>
+ *
+ * <p>Each level caches its last minimum together with the member that held it, so while the slowest consumer
+ * has not moved {@link #get()} reads three cache lines (this sequence, the slowest leaf and the slowest
+ * consumer) whatever the number of consumers.  Only the leaf holding a consumer that has advanced is rescanned,
+ * which bounds the cost of a miss to <code>fanout</code> sequences plus the number of leaves.</p>
+ *
+ * <p>Membership may change while running, from any thread, but changes are serialised.</p>
+ * 两层结构的序列组, 叶子节点是最多fanout个序列的SequenceGroup, 每一层都缓存最小值和最慢的成员,
+ * 生产者检查环绕点时只需读取少量缓存行, 而不是遍历所有消费者的序列.
+ */
+public final class GatingSequenceTree extends Sequence
+{
+    private final int fanout;
+    private volatile SequenceGroup[] leaves = new SequenceGroup[0];
+    // index of the leaf that held the minimum when the cached minimum was last computed
+    private int laggard = 0;
+
+    /**
+     * @param fanout maximum number of sequences held by each leaf.
+     */
+    public GatingSequenceTree(final int fanout)
+    {
+        super(Long.MAX_VALUE);
+        if (fanout < 2)
+        {
+            throw new IllegalArgumentException("fanout must be > 1");
+        }
+
+        this.fanout = fanout;
+    }
+
+    /**
+     * Get the minimum sequence value of all sequences in the tree.
+     *
+     * @return the minimum sequence value, or {@link Long#MAX_VALUE} if the tree is empty.
+     */
+    @Override
+    public long get()
+    {
+        final SequenceGroup[] leaves = this.leaves;
+        final int laggard = this.laggard;
+        if (laggard < leaves.length)
+        {
+            final long cachedMinimum = super.get();
+            if (leaves[laggard].get() == cachedMinimum)
+            {
+                return cachedMinimum;
+            }
+        }
+
+        return rescan(leaves);
+    }
+
+    private long rescan(final SequenceGroup[] leaves)
+    {
+        long minimum = Long.MAX_VALUE;
+        int index = 0;
+        for (int i = 0, n = leaves.length; i < n; i++)
+        {
+            final long value = leaves[i].get();
+            if (value < minimum)
+            {
+                minimum = value;
+                index = i;
+            }
+        }
+
+        if (0 != leaves.length)
+        {
+            laggard = index;
+            super.set(minimum);
+        }
+
+        return minimum;
+    }
+
+    /**
+     * Add sequences to the tree keeping their current values.  This should only be used during initialisation
+     * or when moving existing gating sequences into the tree, as with {@link SequenceGroup#add(Sequence)}.
+     *
+     * @param sequences to add.
+     */
+    public synchronized void add(final Sequence... sequences)
+    {
+        for (final Sequence sequence : sequences)
+        {
+            leafWithSpace().add(sequence);
+        }
+
+        // the added sequences may be behind the cached minimum
+        rescan(leaves);
+    }
+
+    /**
+     * Add sequences to the tree after publishing has started, setting them to the cursor value as
+     * {@link SequenceGroup#addWhileRunning(Cursored, Sequence)} does.
+     *
+     * @param cursored  the cursor the added sequences will be pulling events from.
+     * @param sequences to add.
+     */
+    public synchronized void addWhileRunning(final Cursored cursored, final Sequence... sequences)
+    {
+        for (final Sequence sequence : sequences)
+        {
+            leafWithSpace().addWhileRunning(cursored, sequence);
+        }
+    }
+
+    /**
+     * Remove all occurrences of a sequence from the tree.  Leaves that become empty are discarded.
+     *
+     * @param sequence to remove.
+     * @return true if the sequence was found.
+     */
+    public synchronized boolean remove(final Sequence sequence)
+    {
+        final SequenceGroup[] current = leaves;
+        boolean removed = false;
+        int emptied = 0;
+        for (final SequenceGroup leaf : current)
+        {
+            while (leaf.remove(sequence))
+            {
+                removed = true;
+            }
+
+            if (0 == leaf.size())
+            {
+                emptied++;
+            }
+        }
+
+        if (0 != emptied)
+        {
+            final SequenceGroup[] updated = new SequenceGroup[current.length - emptied];
+            for (int i = 0, pos = 0; i < current.length; i++)
+            {
+                if (0 != current[i].size())
+                {
+                    updated[pos++] = current[i];
+                }
+            }
+            leaves = updated;
+        }
+
+        return removed;
+    }
+
+    /**
+     * @return the number of sequences in the tree.
+     */
+    public int size()
+    {
+        int size = 0;
+        for (final SequenceGroup leaf : leaves)
+        {
+            size += leaf.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * @return a snapshot of the sequences in the tree.
+     */
+    Sequence[] getSequences()
+    {
+        final SequenceGroup[] leaves = this.leaves;
+        final Sequence[] members = new Sequence[size()];
+        int count = 0;
+        for (final SequenceGroup leaf : leaves)
+        {
+            for (final Sequence sequence : leaf.getSequences())
+            {
+                if (count == members.length)
+                {
+                    // a member was added concurrently, it is picked up by the next snapshot
+                    return members;
+                }
+                members[count++] = sequence;
+            }
+        }
+
+        return count == members.length ? members : Arrays.copyOf(members, count);
+    }
+
+    private SequenceGroup leafWithSpace()
+    {
+        final SequenceGroup[] current = leaves;
+        SequenceGroup emptiest = null;
+        for (final SequenceGroup leaf : current)
+        {
+            if (leaf.size() < fanout && (null == emptiest || leaf.size() < emptiest.size()))
+            {
+                emptiest = leaf;
+            }
+        }
+
+        if (null == emptiest)
+        {
+            emptiest = new SequenceGroup();
+            final SequenceGroup[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = emptiest;
+            leaves = updated;
+        }
+
+        return emptiest;
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.toString(leaves);
+    }
+
+    /**
+     * Not supported.
+     */
+    @Override
+    public void set(final long value)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Not supported.
+     */
+    @Override
+    public boolean compareAndSet(final long expectedValue, final long newValue)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Not supported.
+     */
+    @Override
+    public long incrementAndGet()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Not supported.
+     */
+    @Override
+    public long addAndGet(final long increment)
+    {
+        throw new UnsupportedOperationException();
+    }
+}
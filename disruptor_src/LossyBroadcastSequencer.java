@@ -0,0 +1,225 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import sun.misc.Unsafe;
+
+import com.lmax.disruptor.util.Util;
+
+/**
+ * <p>Single producer {@link Sequencer} for broadcast rings where the producer never waits for consumers.  Gating
+ * sequences may be added but are ignored, so a claim always succeeds and slow consumers are overwritten (lapped)
+ * instead of holding back the producer.  The producer's latency is independent of the number and speed of
+ * its consumers.</p>
+ *
+ * <p>Every slot carries a lap flag, computed as in {@link MultiProducerSequencer} from the upper bits of the
+ * sequence.  A claim first sets the flags of the claimed slots to -1 and publishing sets them to the sequence's
+ * lap, so a reader can tell whether a slot still holds the event it expects.  Events must be read with a
+ * {@link LossyEventPoller}, which copies each event out and then checks the flag; the standard event processors
+ * read in place and may see an event while it is being overwritten.</p>
+ * 广播模式的单生产者Sequencer, 生产者从不等待消费者, 慢消费者会被覆盖(套圈). 每个槽位记录圈数标记,
+ * 读取方通过LossyEventPoller拷贝事件后校验标记来检测被套圈, 并重新同步到最新数据.
+ */
+public final class LossyBroadcastSequencer extends AbstractSequencer
+{
+    private static final Unsafe UNSAFE = Util.getUnsafe();
+    private static final long BASE = UNSAFE.arrayBaseOffset(int[].class);
+    private static final long SCALE = UNSAFE.arrayIndexScale(int[].class);
+
+    /**
+     * Flag of a slot that is being written, or has never been published.
+     */
+    static final int WRITING = -1;
+
+    private final int[] availableBuffer;
+    private final int indexMask;
+    private final int indexShift;
+    private long nextValue = Sequence.INITIAL_VALUE;
+
+    /**
+     * Construct a Sequencer with the selected wait strategy and buffer size.
+     *
+     * @param bufferSize   the size of the buffer that this will sequence over.
+     * @param waitStrategy for those waiting on sequences.
+     */
+    public LossyBroadcastSequencer(int bufferSize, final WaitStrategy waitStrategy)
+    {
+        super(bufferSize, waitStrategy);
+        availableBuffer = new int[bufferSize];
+        indexMask = bufferSize - 1;
+        indexShift = Util.log2(bufferSize);
+        for (int i = 0; i < bufferSize; i++)
+        {
+            UNSAFE.putOrderedInt(availableBuffer, BASE + i * SCALE, WRITING);
+        }
+    }
+
+    /**
+     * Always true, the producer overwrites slots regardless of consumers.
+     *
+     * @see Sequencer#hasAvailableCapacity(int)
+     */
+    @Override
+    public boolean hasAvailableCapacity(final int requiredCapacity)
+    {
+        return true;
+    }
+
+    /**
+     * @see Sequencer#remainingCapacity()
+     */
+    @Override
+    public long remainingCapacity()
+    {
+        return bufferSize;
+    }
+
+    /**
+     * @see Sequencer#next()
+     */
+    @Override
+    public long next()
+    {
+        return next(1);
+    }
+
+    /**
+     * @see Sequencer#next(int)
+     */
+    @Override
+    public long next(final int n)
+    {
+        if (n < 1 || n > bufferSize)
+        {
+            throw new IllegalArgumentException("n must be > 0 and <= bufferSize");
+        }
+
+        final long lo = nextValue + 1;
+        final long hi = nextValue + n;
+        for (long sequence = lo; sequence < hi; sequence++)
+        {
+            UNSAFE.putOrderedInt(availableBuffer, address(sequence), WRITING);
+        }
+        // StoreStore fence between the invalidations and the caller's writes to the events: a volatile store alone
+        // lets later plain stores move ahead of it, but they cannot move ahead of the volatile load that follows it
+        // (Unsafe.storeFence is not available before Java 8)
+        final long address = address(hi);
+        UNSAFE.putIntVolatile(availableBuffer, address, WRITING);
+        UNSAFE.getIntVolatile(availableBuffer, address);
+
+        nextValue = hi;
+        return hi;
+    }
+
+    /**
+     * Never fails, see {@link #next()}.
+     *
+     * @see Sequencer#tryNext()
+     */
+    @Override
+    public long tryNext()
+    {
+        return next(1);
+    }
+
+    /**
+     * Never fails, see {@link #next(int)}.
+     *
+     * @see Sequencer#tryNext(int)
+     */
+    @Override
+    public long tryNext(final int n)
+    {
+        return next(n);
+    }
+
+    /**
+     * @see Sequencer#claim(long)
+     */
+    @Override
+    public void claim(final long sequence)
+    {
+        this.nextValue = sequence;
+        cursor.set(sequence);
+    }
+
+    /**
+     * @see Sequencer#publish(long)
+     */
+    @Override
+    public void publish(final long sequence)
+    {
+        UNSAFE.putOrderedInt(availableBuffer, address(sequence), calculateAvailabilityFlag(sequence));
+        cursor.set(sequence);
+        signalAllWhenBlocking();
+    }
+
+    /**
+     * @see Sequencer#publish(long, long)
+     */
+    @Override
+    public void publish(final long lo, final long hi)
+    {
+        for (long sequence = lo; sequence <= hi; sequence++)
+        {
+            UNSAFE.putOrderedInt(availableBuffer, address(sequence), calculateAvailabilityFlag(sequence));
+        }
+        cursor.set(hi);
+        signalAllWhenBlocking();
+    }
+
+    /**
+     * @see Sequencer#isAvailable(long)
+     */
+    @Override
+    public boolean isAvailable(final long sequence)
+    {
+        return availabilityFlagOf(sequence) == calculateAvailabilityFlag(sequence);
+    }
+
+    @Override
+    public long getHighestPublishedSequence(final long lowerBound, final long availableSequence)
+    {
+        for (long sequence = lowerBound; sequence <= availableSequence; sequence++)
+        {
+            if (!isAvailable(sequence))
+            {
+                return sequence - 1;
+            }
+        }
+
+        return availableSequence;
+    }
+
+    /**
+     * @param sequence of the slot.
+     * @return the current flag of the slot holding <code>sequence</code>, read with volatile semantics.
+     */
+    int availabilityFlagOf(final long sequence)
+    {
+        return UNSAFE.getIntVolatile(availableBuffer, address(sequence));
+    }
+
+    int calculateAvailabilityFlag(final long sequence)
+    {
+        return (int) (sequence >>> indexShift);
+    }
+
+    private long address(final long sequence)
+    {
+        return BASE + (((int) sequence) & indexMask) * SCALE;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+/**
+ * <p>Reads a {@link RingBuffer} created with {@link RingBuffer#createLossyBroadcast(EventFactory, int, WaitStrategy)}.
+ * The poller does not gate the producer; if it falls a full lap behind, or an event is overwritten while being
+ * read, the lost events are counted and the poller resynchronises to the most recently published event.</p>
+ *
+ * <p>Each event is copied into a holder owned by the poller and the slot's lap flag is checked after the copy, so
+ * the handler only ever sees a consistent event, but never the ring buffer's instance.  A poller must only be
+ * used by one thread.</p>
+ * 广播模式RingBuffer的读取者, 先把事件拷贝到本地对象再校验槽位的圈数标记, 被套圈时记录丢失数量并跳到最新的事件.
+ *
+ * @param <T> the type of event used.
+ */
+public final class LossyEventPoller<T>
+{
+    private final RingBuffer<T> ringBuffer;
+    private final LossyBroadcastSequencer sequencer;
+    private final Copier<? super T> copier;
+    private final T holder;
+    private final int bufferSize;
+    private long nextSequence;
+    private long lostCount = 0;
+    // written to fence the copy from the flag check that follows it, see read()
+    private volatile int fence;
+
+    /**
+     * Copies an event out of the ring buffer.
+     *
+     * @param <T> the type of event used.
+     */
+    public interface Copier<T>
+    {
+        /**
+         * Copy the contents of an event, without keeping references to the source.
+         *
+         * @param source      the event in the ring buffer, which may be overwritten concurrently.
+         * @param destination the poller's holder.
+         */
+        void copy(T source, T destination);
+    }
+
+    /**
+     * Create a poller starting after the most recently published event.
+     *
+     * @param ringBuffer a lossy broadcast ring buffer.
+     * @param copier     copies events into the holder.
+     * @param holder     receives each event before it is passed to the handler.
+     */
+    public LossyEventPoller(final RingBuffer<T> ringBuffer, final Copier<? super T> copier, final T holder)
+    {
+        if (!(ringBuffer.sequencer instanceof LossyBroadcastSequencer))
+        {
+            throw new IllegalArgumentException("ringBuffer must be created with RingBuffer.createLossyBroadcast");
+        }
+
+        this.ringBuffer = ringBuffer;
+        this.sequencer = (LossyBroadcastSequencer) ringBuffer.sequencer;
+        this.copier = copier;
+        this.holder = holder;
+        this.bufferSize = ringBuffer.getBufferSize();
+        this.nextSequence = ringBuffer.getCursor() + 1;
+    }
+
+    /**
+     * Handle every event published since the last poll, skipping any that have been overwritten.
+     *
+     * @param eventHandler receives the holder filled with each event in turn.
+     * @return {@link EventPoller.PollState#PROCESSING} if any event was handled, otherwise
+     * {@link EventPoller.PollState#IDLE}.
+     * @throws Exception if the handler throws.
+     */
+    public EventPoller.PollState poll(final EventPoller.Handler<T> eventHandler) throws Exception
+    {
+        long cursor = sequencer.getCursor();
+        if (nextSequence > cursor)
+        {
+            return EventPoller.PollState.IDLE;
+        }
+
+        boolean processed = false;
+        boolean processNextEvent = true;
+        while (processNextEvent && nextSequence <= cursor)
+        {
+            final long sequence = nextSequence;
+            if (cursor - sequence >= bufferSize || !read(sequence))
+            {
+                // lapped, skip to the latest event
+                cursor = sequencer.getCursor();
+                if (cursor <= sequence)
+                {
+                    // the slot is being claimed again but nothing newer is published yet, retry on the next poll
+                    break;
+                }
+
+                lostCount += cursor - sequence;
+                nextSequence = cursor;
+                continue;
+            }
+
+            nextSequence = sequence + 1;
+            processed = true;
+            processNextEvent = eventHandler.onEvent(holder, sequence, sequence == cursor);
+        }
+
+        return processed ? EventPoller.PollState.PROCESSING : EventPoller.PollState.IDLE;
+    }
+
+    private boolean read(final long sequence)
+    {
+        final int flag = sequencer.calculateAvailabilityFlag(sequence);
+        if (sequencer.availabilityFlagOf(sequence) != flag)
+        {
+            return false;
+        }
+
+        copier.copy(ringBuffer.get(sequence), holder);
+
+        // Unsafe.loadFence is not available before Java 8, a volatile store is a full fence on the JVMs we
+        // support and keeps the copy's loads ahead of the flag check
+        fence = flag;
+        return sequencer.availabilityFlagOf(sequence) == flag;
+    }
+
+    /**
+     * @return the sequence of the next event this poller will read.
+     */
+    public long getNextSequence()
+    {
+        return nextSequence;
+    }
+
+    /**
+     * @return the number of events skipped because they were overwritten before they could be read.
+     */
+    public long getLostCount()
+    {
+        return lostCount;
+    }
+}
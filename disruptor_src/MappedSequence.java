@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.nio.ByteBuffer;
+
+import sun.misc.Unsafe;
+
+import com.lmax.disruptor.util.Util;
+
+/**
+ * <p>A {@link Sequence} whose value lives in a direct or memory mapped {@link ByteBuffer} rather than on the heap,
+ * so that it can be shared with other processes mapping the same file.  The value is accessed with the same
+ * ordered, volatile and CAS semantics as a heap sequence.</p>
+ *
+ * <p>The caller is responsible for placing the value on its own cache line (or pair of lines) within the buffer.</p>
+ * 值存放在直接内存或内存映射文件中的Sequence, 可以在多个进程间共享.
+ */
+public final class MappedSequence extends Sequence
+{
+    private static final Unsafe UNSAFE = Util.getUnsafe();
+
+    // keeps the mapping alive for as long as the sequence is reachable
+    private final ByteBuffer buffer;
+    private final long address;
+
+    /**
+     * @param buffer the direct buffer holding the value.
+     * @param offset offset of the value within the buffer, must be 8 byte aligned.
+     */
+    public MappedSequence(final ByteBuffer buffer, final int offset)
+    {
+        if (!buffer.isDirect())
+        {
+            throw new IllegalArgumentException("buffer must be direct");
+        }
+        if (0 != (offset & 7) || offset < 0 || offset + 8 > buffer.capacity())
+        {
+            throw new IllegalArgumentException("offset must be 8 byte aligned and within the buffer");
+        }
+
+        this.buffer = buffer;
+        this.address = Util.getAddressFromDirectByteBuffer(buffer) + offset;
+    }
+
+    @Override
+    public long get()
+    {
+        return UNSAFE.getLongVolatile(null, address);
+    }
+
+    @Override
+    public void set(final long value)
+    {
+        UNSAFE.putOrderedLong(null, address, value);
+    }
+
+    @Override
+    public void setVolatile(final long value)
+    {
+        UNSAFE.putLongVolatile(null, address, value);
+    }
+
+    @Override
+    public boolean compareAndSet(final long expectedValue, final long newValue)
+    {
+        return UNSAFE.compareAndSwapLong(null, address, expectedValue, newValue);
+    }
+}
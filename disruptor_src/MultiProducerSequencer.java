@@ -15,6 +15,7 @@
  */
 package com.lmax.disruptor;
 
+import java.util.Arrays;
 import java.util.concurrent.locks.LockSupport;
 
 import sun.misc.Unsafe;
@@ -40,6 +41,8 @@ public final class MultiProducerSequencer extends AbstractSequencer
     private static final Unsafe UNSAFE = Util.getUnsafe();
     private static final long BASE = UNSAFE.arrayBaseOffset(int[].class);
     private static final long SCALE = UNSAFE.arrayIndexScale(int[].class);
+    // 批量发布的区间达到这个长度时改用Arrays.fill标记可用, 而不是逐个putOrderedInt
+    private static final int BULK_PUBLISH_THRESHOLD = 64;
 
     private final Sequence gatingSequenceCache = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
 
@@ -145,7 +148,8 @@ public final class MultiProducerSequencer extends AbstractSequencer
 
                 if (wrapPoint > gatingSequence)
                 {
-                    waitStrategy.signalAllWhenBlocking();
+                    signalAllWhenBlocking();
+                    onProducerBlocked();
                     LockSupport.parkNanos(1); // TODO, should we spin based on the wait strategy?
                     continue;
                 }
@@ -228,7 +232,7 @@ public final class MultiProducerSequencer extends AbstractSequencer
     public void publish(final long sequence)
     {
         setAvailable(sequence);
-        waitStrategy.signalAllWhenBlocking();
+        signalAllWhenBlocking();
     }
 
     /**
@@ -237,11 +241,18 @@ public final class MultiProducerSequencer extends AbstractSequencer
     @Override
     public void publish(long lo, long hi)
     {
-        for (long l = lo; l <= hi; l++)
+        if (hi - lo + 1 >= BULK_PUBLISH_THRESHOLD)
         {
-            setAvailable(l);
+            setAvailableRange(lo, hi);
         }
-        waitStrategy.signalAllWhenBlocking();
+        else
+        {
+            for (long l = lo; l <= hi; l++)
+            {
+                setAvailable(l);
+            }
+        }
+        signalAllWhenBlocking();
     }
 
     /**
@@ -273,6 +284,36 @@ public final class MultiProducerSequencer extends AbstractSequencer
         setAvailableBufferValue(calculateIndex(sequence), calculateAvailabilityFlag(sequence));
     }
 
+    /**
+     * Mark a claimed range available in bulk.  Within one lap of the ring buffer every slot of the range takes the
+     * same flag, so the range is at most two runs of equal values, filled with {@link Arrays#fill(int[], int, int, int)}
+     * which the JIT turns into wide stores.  A volatile store followed by a volatile load of the first slot acts as
+     * a full fence, keeping the plain stores of the fill behind the writes to the events, in place of the ordered
+     * store per slot.
+     * 批量标记区间可用: 同一圈内的槽位标记值相同, 所以区间最多分成两段(跨过数组末尾时), 用Arrays.fill填充.
+     * 先对第一个槽位做volatile写再volatile读, 相当于一次完整的内存屏障, 保证事件数据先于标记可见.
+     */
+    private void setAvailableRange(final long lo, final long hi)
+    {
+        final int loIndex = calculateIndex(lo);
+        final long loAddress = (loIndex * SCALE) + BASE;
+        final int loFlag = calculateAvailabilityFlag(lo);
+        UNSAFE.putIntVolatile(availableBuffer, loAddress, loFlag);
+        UNSAFE.getIntVolatile(availableBuffer, loAddress);
+
+        final int hiIndex = calculateIndex(hi);
+        if (hiIndex > loIndex)
+        {
+            Arrays.fill(availableBuffer, loIndex + 1, hiIndex + 1, loFlag);
+        }
+        else
+        {
+            // the range wraps past the end of the buffer, the slots from index 0 are a lap further on
+            Arrays.fill(availableBuffer, loIndex + 1, availableBuffer.length, loFlag);
+            Arrays.fill(availableBuffer, 0, hiIndex + 1, calculateAvailabilityFlag(hi));
+        }
+    }
+
     private void setAvailableBufferValue(int index, int flag)
     {
         long bufferAddress = (index * SCALE) + BASE;
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.Arrays;
+
+/**
+ * <p>Merges the events of several {@link RingBuffer}s into a single stream ordered by a key, such as a
+ * timestamp.  The events of each source must already be in key order.  Events are handed to the handler in
+ * place, nothing is copied.</p>
+ *
+ * <p>The head event of each source is kept in a binary heap of primitive keys.  An event is only emitted once
+ * every source without an available event has a watermark at or above its key, i.e. once no source can still
+ * produce an earlier event.  A source's watermark is the key of the last event taken from it, raised by
+ * {@link #advanceWatermark(int, long)} when a source is known to be idle (or by publishing heartbeat events
+ * to it).  Until then the merge waits, and the rings of the other sources may fill up.</p>
+ *
+ * <p>Each source has its own gating sequence, which is advanced once per call to {@link #poll(Handler, int)}
+ * rather than once per event.  All methods other than {@link #advanceWatermark(int, long)} must be called from
+ * the single consumer thread.</p>
+ * 按key(例如时间戳)将多个RingBuffer的事件归并为一个全局有序的流. 用基本类型的二叉堆保存每个源的队首key,
+ * 空闲的源通过水位线(watermark)声明不会再产生更小的key, 每个源的门控序号按批推进.
+ *
+ * @param <T> the type of event used.
+ */
+public final class OrderedMergePoller<T>
+{
+    private final EventKey<? super T> eventKey;
+
+    private Source<T>[] sources;
+    // binary heap of source indices ordered by the key of their head event
+    private int[] heap = new int[0];
+    private int heapSize = 0;
+
+    /**
+     * Extracts the merge key of an event.
+     *
+     * @param <T> the type of event used.
+     */
+    public interface EventKey<T>
+    {
+        /**
+         * @param event the event.
+         * @return the key the event is ordered by.
+         */
+        long keyOf(T event);
+    }
+
+    /**
+     * Callback for the merged stream.
+     *
+     * @param <T> the type of event used.
+     */
+    public interface Handler<T>
+    {
+        /**
+         * @param event      published to a source ring buffer.
+         * @param source     index of the source, as returned by {@link OrderedMergePoller#addSource(RingBuffer, Sequence...)}.
+         * @param sequence   of the event in its source ring buffer.
+         * @param endOfBatch flag to indicate this is the last event emitted by the current poll.
+         * @return false to stop the current poll after this event.
+         * @throws Exception if the handler fails, the event is still treated as emitted.
+         */
+        boolean onEvent(T event, int source, long sequence, boolean endOfBatch) throws Exception;
+    }
+
+    /**
+     * @param eventKey extracts the key events are merged by.
+     */
+    public OrderedMergePoller(final EventKey<? super T> eventKey)
+    {
+        this.eventKey = eventKey;
+        this.sources = Source.newArray(0);
+    }
+
+    /**
+     * Add a ring buffer to the merge.  A gating sequence for it is created and added to the ring buffer.
+     *
+     * @param ringBuffer         to read events from.
+     * @param dependentSequences sequences of consumers that must process an event before it is merged, empty to
+     *                           merge events as soon as they are published.
+     * @return the index of the source.
+     */
+    public int addSource(final RingBuffer<T> ringBuffer, final Sequence... dependentSequences)
+    {
+        final Sequence dependentSequence;
+        if (0 == dependentSequences.length)
+        {
+            dependentSequence = null;
+        }
+        else if (1 == dependentSequences.length)
+        {
+            dependentSequence = dependentSequences[0];
+        }
+        else
+        {
+            dependentSequence = new FixedSequenceGroup(dependentSequences);
+        }
+
+        final Source<T> source = new Source<T>(ringBuffer, dependentSequence);
+        ringBuffer.addGatingSequences(source.sequence);
+        source.nextSequence = source.sequence.get() + 1;
+        source.availableSequence = source.sequence.get();
+
+        final int index = sources.length;
+        sources = Arrays.copyOf(sources, index + 1);
+        sources[index] = source;
+        heap = Arrays.copyOf(heap, index + 1);
+
+        return index;
+    }
+
+    /**
+     * Declare that a source will not produce any event with a key below <code>watermark</code>, allowing the merge
+     * to progress while the source is idle.  May be called from any thread.
+     *
+     * @param source    index of the source.
+     * @param watermark lower bound of the keys of future events from the source.
+     */
+    public void advanceWatermark(final int source, final long watermark)
+    {
+        final Sequence declared = sources[source].watermark;
+        long current;
+        do
+        {
+            current = declared.get();
+            if (current >= watermark)
+            {
+                return;
+            }
+        }
+        while (!declared.compareAndSet(current, watermark));
+    }
+
+    /**
+     * Emit events in key order until no further event can be emitted, <code>limit</code> events have been
+     * emitted or the handler asks to stop.
+     *
+     * @param handler to receive the events.
+     * @param limit   maximum number of events to emit.
+     * @return the number of events emitted.
+     * @throws Exception if the handler throws.
+     */
+    public int poll(final Handler<? super T> handler, final int limit) throws Exception
+    {
+        final Source<T>[] sources = this.sources;
+        for (int i = 0; i < sources.length; i++)
+        {
+            if (!sources[i].queued)
+            {
+                refresh(i);
+            }
+        }
+
+        int emitted = 0;
+        try
+        {
+            boolean more = emitted < limit && canEmitHead();
+            while (more)
+            {
+                final int index = heap[0];
+                final Source<T> source = sources[index];
+                final long sequence = source.nextSequence++;
+                final T event = source.ringBuffer.get(sequence);
+                source.lastKey = source.headKey;
+
+                if (sequence < source.availableSequence)
+                {
+                    source.headKey = eventKey.keyOf(source.ringBuffer.get(source.nextSequence));
+                    siftDown(0);
+                }
+                else
+                {
+                    removeHead();
+                    refresh(index);
+                }
+
+                emitted++;
+                final boolean endOfBatch = emitted == limit || !canEmitHead();
+                more = handler.onEvent(event, index, sequence, endOfBatch) && !endOfBatch;
+            }
+        }
+        finally
+        {
+            for (final Source<T> source : sources)
+            {
+                if (source.sequence.get() != source.nextSequence - 1)
+                {
+                    source.sequence.set(source.nextSequence - 1);
+                }
+            }
+        }
+
+        return emitted;
+    }
+
+    /**
+     * @param source index of the source.
+     * @return the gating sequence of the source, i.e. the last of its events emitted by a completed poll.
+     */
+    public Sequence getSequence(final int source)
+    {
+        return sources[source].sequence;
+    }
+
+    /**
+     * @return the number of sources.
+     */
+    public int getSourceCount()
+    {
+        return sources.length;
+    }
+
+    private boolean canEmitHead()
+    {
+        if (0 == heapSize)
+        {
+            return false;
+        }
+
+        final Source<T>[] sources = this.sources;
+        final long key = sources[heap[0]].headKey;
+        for (int i = 0; i < sources.length; i++)
+        {
+            final Source<T> source = sources[i];
+            if (!source.queued && Math.max(source.lastKey, source.watermark.get()) < key && !refresh(i))
+            {
+                return false;
+            }
+        }
+
+        // a source refreshed above may now hold the head
+        return sources[heap[0]].headKey <= key;
+    }
+
+    private boolean refresh(final int index)
+    {
+        final Source<T> source = sources[index];
+        final long nextSequence = source.nextSequence;
+        if (nextSequence > source.availableSequence)
+        {
+            final long gatingValue =
+                null == source.dependentSequence ? source.ringBuffer.getCursor() : source.dependentSequence.get();
+            source.availableSequence = source.ringBuffer.sequencer.getHighestPublishedSequence(nextSequence, gatingValue);
+            if (nextSequence > source.availableSequence)
+            {
+                return false;
+            }
+        }
+
+        source.headKey = eventKey.keyOf(source.ringBuffer.get(nextSequence));
+        source.queued = true;
+        heap[heapSize] = index;
+        siftUp(heapSize++);
+        return true;
+    }
+
+    private void removeHead()
+    {
+        sources[heap[0]].queued = false;
+        heap[0] = heap[--heapSize];
+        if (0 != heapSize)
+        {
+            siftDown(0);
+        }
+    }
+
+    private void siftUp(int position)
+    {
+        final int index = heap[position];
+        while (position > 0)
+        {
+            final int parent = (position - 1) >>> 1;
+            if (!before(index, heap[parent]))
+            {
+                break;
+            }
+
+            heap[position] = heap[parent];
+            position = parent;
+        }
+
+        heap[position] = index;
+    }
+
+    private void siftDown(int position)
+    {
+        final int index = heap[position];
+        final int half = heapSize >>> 1;
+        while (position < half)
+        {
+            int child = (position << 1) + 1;
+            final int right = child + 1;
+            if (right < heapSize && before(heap[right], heap[child]))
+            {
+                child = right;
+            }
+
+            if (!before(heap[child], index))
+            {
+                break;
+            }
+
+            heap[position] = heap[child];
+            position = child;
+        }
+
+        heap[position] = index;
+    }
+
+    private boolean before(final int a, final int b)
+    {
+        final long keyA = sources[a].headKey;
+        final long keyB = sources[b].headKey;
+        // equal keys are taken in source order so the merge is deterministic
+        return keyA < keyB || (keyA == keyB && a < b);
+    }
+
+    private static final class Source<T>
+    {
+        private final RingBuffer<T> ringBuffer;
+        private final Sequence dependentSequence;
+        private final Sequence sequence = new Sequence();
+        private final Sequence watermark = new Sequence(Long.MIN_VALUE);
+        private long nextSequence;
+        private long availableSequence;
+        private long headKey;
+        private long lastKey = Long.MIN_VALUE;
+        private boolean queued = false;
+
+        Source(final RingBuffer<T> ringBuffer, final Sequence dependentSequence)
+        {
+            this.ringBuffer = ringBuffer;
+            this.dependentSequence = dependentSequence;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <T> Source<T>[] newArray(final int length)
+        {
+            return (Source<T>[]) new Source<?>[length];
+        }
+    }
+}
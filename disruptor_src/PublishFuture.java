@@ -0,0 +1,245 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * <p>Result of an asynchronous publication made through an {@link AsyncEventSink}.  The value of the
+ * future is the sequence the event was published to.</p>
+ *
+ * <p>Completion is normally observed through a {@link Listener} so that no thread has to block waiting for
+ * capacity; {@link #get()} is provided for callers that are happy to block.</p>
+ * 异步发布的结果, 值为事件被发布到的序号. 推荐通过Listener获取结果, 避免线程阻塞.
+ */
+public class PublishFuture implements Future<Long>
+{
+    /**
+     * Callback notified once a publication has completed, failed or been cancelled.
+     */
+    public interface Listener
+    {
+        /**
+         * Called once the publication has completed.
+         *
+         * @param sequence the sequence the event was published to, or -1 if it never reached the ring buffer.
+         * @param failure  null on success, otherwise the cause of the failure.  A cancelled publication
+         *                 reports a {@link CancellationException}.
+         */
+        void onComplete(long sequence, Throwable failure);
+    }
+
+    static final int PENDING = 0;
+    static final int CLAIMING = 1;
+    static final int PUBLISHED = 2;
+    // cancel() has won the race with the claim, but the future is not done until complete() records the failure
+    static final int CANCELLING = 3;
+    static final int COMPLETED = 4;
+    static final int CANCELLED = 5;
+
+    private static final AtomicIntegerFieldUpdater<PublishFuture> STATE_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(PublishFuture.class, "state");
+
+    private volatile int state = PENDING;
+    private volatile long sequence = Sequencer.INITIAL_CURSOR_VALUE;
+    // written before the volatile store of a final state, so it is visible to anyone who sees isDone()
+    private Throwable failure;
+    private List<Listener> listeners;
+
+    PublishFuture()
+    {
+    }
+
+    /**
+     * Register a listener to be notified on completion.  If the publication has already completed the
+     * listener is notified immediately on the calling thread, otherwise it will be notified on the thread
+     * that completes the publication.
+     *
+     * @param listener to notify.
+     * @return this future.
+     */
+    public PublishFuture addListener(final Listener listener)
+    {
+        synchronized (this)
+        {
+            if (!isDone())
+            {
+                if (null == listeners)
+                {
+                    listeners = new ArrayList<Listener>(2);
+                }
+                listeners.add(listener);
+                return this;
+            }
+        }
+
+        listener.onComplete(sequence, failure);
+        return this;
+    }
+
+    /**
+     * The sequence the event was published to.
+     *
+     * @return the published sequence, or -1 if the event has not yet been published.
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Cancel the publication.  Only succeeds while the publication is still queued waiting for capacity, once
+     * a sequence has been claimed the event will be published.
+     */
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning)
+    {
+        if (STATE_UPDATER.compareAndSet(this, PENDING, CANCELLING))
+        {
+            complete(new CancellationException());
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled()
+    {
+        return state == CANCELLED;
+    }
+
+    @Override
+    public boolean isDone()
+    {
+        return state >= COMPLETED;
+    }
+
+    @Override
+    public Long get() throws InterruptedException, ExecutionException
+    {
+        synchronized (this)
+        {
+            while (!isDone())
+            {
+                wait();
+            }
+        }
+
+        return report();
+    }
+
+    @Override
+    public Long get(final long timeout, final TimeUnit unit)
+        throws InterruptedException, ExecutionException, java.util.concurrent.TimeoutException
+    {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this)
+        {
+            long remaining;
+            while (!isDone())
+            {
+                remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                {
+                    throw new java.util.concurrent.TimeoutException();
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+
+        return report();
+    }
+
+    /**
+     * Move from {@link #PENDING} to {@link #CLAIMING}, fails if the publication has been cancelled.
+     */
+    boolean startClaim()
+    {
+        return STATE_UPDATER.compareAndSet(this, PENDING, CLAIMING);
+    }
+
+    /**
+     * Return to {@link #PENDING} after a claim attempt found no capacity.
+     */
+    void abortClaim()
+    {
+        state = PENDING;
+    }
+
+    void published(final long sequence)
+    {
+        this.sequence = sequence;
+        state = PUBLISHED;
+    }
+
+    void completeExceptionally(final long sequence, final Throwable failure)
+    {
+        this.sequence = sequence;
+        complete(failure);
+    }
+
+    void complete(final Throwable failure)
+    {
+        final List<Listener> toNotify;
+        synchronized (this)
+        {
+            this.failure = failure;
+            state = CANCELLING == state ? CANCELLED : COMPLETED;
+            toNotify = listeners;
+            listeners = null;
+            notifyAll();
+        }
+
+        if (null != toNotify)
+        {
+            for (int i = 0, size = toNotify.size(); i < size; i++)
+            {
+                toNotify.get(i).onComplete(sequence, failure);
+            }
+        }
+    }
+
+    private Long report() throws ExecutionException
+    {
+        if (CANCELLED == state)
+        {
+            throw failure instanceof CancellationException ?
+                (CancellationException) failure : new CancellationException();
+        }
+        if (null != failure)
+        {
+            throw new ExecutionException(failure);
+        }
+
+        return sequence;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PublishFuture{" +
+            "state=" + state +
+            ", sequence=" + sequence +
+            '}';
+    }
+}
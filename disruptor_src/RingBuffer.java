@@ -16,6 +16,8 @@
 package com.lmax.disruptor;
 
 
+import java.util.concurrent.TimeUnit;
+
 import sun.misc.Unsafe;
 
 import com.lmax.disruptor.dsl.ProducerType;
@@ -23,7 +25,7 @@ import com.lmax.disruptor.util.Util;
 
 abstract class RingBufferPad
 {
-    protected long p1, p2, p3, p4, p5, p6, p7;
+    protected long p1, p2, p3, p4, p5, p6, p7, p8, p9, p10, p11, p12, p13, p14, p15;
 }
 
 /**
@@ -127,7 +129,7 @@ abstract class RingBufferFields<E> extends RingBufferPad
  * an event being exchanged between event producer and {@link EventProcessor}s.
  *  RingBuffer的内部结构明确了：内部用数组来实现，同时有保存数组长度的域bufferSize和下标掩码indexMask，还有一个sequencer。
  *  这里要注意几点：
- *  1.整个RingBuffer内部做了大量的缓存行填充，前后各填充了56个字节，entries本身也根据引用大小进行了填充，假设引用大小为4字节，那么entries数组两侧就要个填充32个空数组位。也就是说，实际的数组长度比bufferSize要大。所以可以看到根据序列从entries中取元素的方法elementAt内部做了一些调整，不是单纯的取模。
+ *  1.整个RingBuffer内部做了大量的缓存行填充，前后各填充了120个字节(覆盖相邻缓存行预取的128字节范围)，entries本身也根据引用大小进行了填充，假设引用大小为4字节，那么entries数组两侧就要个填充32个空数组位。也就是说，实际的数组长度比bufferSize要大。所以可以看到根据序列从entries中取元素的方法elementAt内部做了一些调整，不是单纯的取模。
  *  2.bufferSize必须是2的幂，indexMask就是bufferSize-1，这样取模更高效(sequence&indexMask)。
  *  3.初始化时需要传入一个EventFactory，用来做队列内事件的预填充。
 
@@ -138,20 +140,25 @@ abstract class RingBufferFields<E> extends RingBufferPad
 public final class RingBuffer<E> extends RingBufferFields<E> implements Cursored, EventSequencer<E>, EventSink<E>
 {
     public static final long INITIAL_CURSOR_VALUE = Sequence.INITIAL_VALUE;
-    protected long p1, p2, p3, p4, p5, p6, p7;
+    protected long p1, p2, p3, p4, p5, p6, p7, p8, p9, p10, p11, p12, p13, p14, p15;
+
+    private final BarrierWaitStrategies barrierWaitStrategies;
 
     /**
      * Construct a RingBuffer with the full option set.
      *
-     * @param eventFactory to newInstance entries for filling the RingBuffer
-     * @param sequencer    sequencer to handle the ordering of events moving through the RingBuffer.
+     * @param eventFactory          to newInstance entries for filling the RingBuffer
+     * @param sequencer             sequencer to handle the ordering of events moving through the RingBuffer.
+     * @param barrierWaitStrategies of the sequencer, creating barriers that wait with their own strategy.
      * @throws IllegalArgumentException if bufferSize is less than 1 or not a power of 2
      */
     RingBuffer(
         EventFactory<E> eventFactory,//用来初始化数组中的数据
-        Sequencer sequencer)//管理生产者序列的管理者
+        Sequencer sequencer,//管理生产者序列的管理者
+        BarrierWaitStrategies barrierWaitStrategies)//创建单独指定等待策略的屏障
     {
         super(eventFactory, sequencer);
+        this.barrierWaitStrategies = barrierWaitStrategies;
     }
 
     /**
@@ -170,7 +177,7 @@ public final class RingBuffer<E> extends RingBufferFields<E> implements Cursored
     {
         MultiProducerSequencer sequencer = new MultiProducerSequencer(bufferSize, waitStrategy);
 
-        return new RingBuffer<E>(factory, sequencer);
+        return new RingBuffer<E>(factory, sequencer, sequencer.getBarrierWaitStrategies());
     }
 
     /**
@@ -202,7 +209,7 @@ public final class RingBuffer<E> extends RingBufferFields<E> implements Cursored
     {
         SingleProducerSequencer sequencer = new SingleProducerSequencer(bufferSize, waitStrategy);
 
-        return new RingBuffer<E>(factory, sequencer);
+        return new RingBuffer<E>(factory, sequencer, sequencer.getBarrierWaitStrategies());
     }
 
     /**
@@ -218,6 +225,26 @@ public final class RingBuffer<E> extends RingBufferFields<E> implements Cursored
         return createSingleProducer(factory, bufferSize, new BlockingWaitStrategy());
     }
 
+    /**
+     * Create a new single producer RingBuffer in which the producer never waits for consumers.  Consumers that fall
+     * a lap behind are overwritten and should read with a {@link LossyEventPoller}.
+     *
+     * @param factory      used to create the events within the ring buffer.
+     * @param bufferSize   number of elements to create within the ring buffer.
+     * @param waitStrategy used to determine how to wait for new elements to become available.
+     * @throws IllegalArgumentException if bufferSize is less than 1 or not a power of 2
+     * @see LossyBroadcastSequencer
+     */
+    public static <E> RingBuffer<E> createLossyBroadcast(
+        EventFactory<E> factory,
+        int bufferSize,
+        WaitStrategy waitStrategy)
+    {
+        LossyBroadcastSequencer sequencer = new LossyBroadcastSequencer(bufferSize, waitStrategy);
+
+        return new RingBuffer<E>(factory, sequencer, sequencer.getBarrierWaitStrategies());
+    }
+
     /**
      * Create a new Ring Buffer with the specified producer type (SINGLE or MULTI)
      *
@@ -415,6 +442,59 @@ public final class RingBuffer<E> extends RingBufferFields<E> implements Cursored
         return sequencer.removeGatingSequence(sequence);
     }
 
+    /**
+     * Install a policy that evicts consumers holding producers back for too long.
+     *
+     * @param evictionPolicy the policy, or null to never evict.
+     * @throws UnsupportedOperationException if the ring buffer's sequencer does not support eviction.
+     * @throws IllegalArgumentException if the policy's lag threshold is not less than the buffer size.
+     * @see AbstractSequencer#setEvictionPolicy(SlowConsumerEvictionPolicy)
+     */
+    public void setEvictionPolicy(SlowConsumerEvictionPolicy evictionPolicy)
+    {
+        sequencer(AbstractSequencer.class, "Eviction").setEvictionPolicy(evictionPolicy);
+    }
+
+    /**
+     * Batch the publication of events to consumers, which then only see them once the producer calls
+     * {@link #flush()} or a batch fills up.
+     *
+     * @param maxEvents number of events after which the cursor is written, 1 to publish immediately.
+     * @param maxDelay  age of the oldest pending event after which the next publication writes the cursor.
+     * @param unit      of the delay.
+     * @throws UnsupportedOperationException if the ring buffer does not have a single producer.
+     * @see SingleProducerSequencer#setBatchedPublication(int, long, TimeUnit)
+     */
+    public void setBatchedPublication(int maxEvents, long maxDelay, TimeUnit unit)
+    {
+        sequencer(SingleProducerSequencer.class, "Batched publication")
+            .setBatchedPublication(maxEvents, maxDelay, unit);
+    }
+
+    /**
+     * Make every event published so far visible to consumers, when the sequencer batches publication.  Must be
+     * called from the producer thread.
+     *
+     * @see SingleProducerSequencer#setBatchedPublication(int, long, TimeUnit)
+     */
+    public void flush()
+    {
+        if (sequencer instanceof SingleProducerSequencer)
+        {
+            ((SingleProducerSequencer) sequencer).flush();
+        }
+    }
+
+    private <S> S sequencer(Class<S> type, String feature)
+    {
+        if (!type.isInstance(sequencer))
+        {
+            throw new UnsupportedOperationException(feature + " is not supported by " + sequencer.getClass().getName());
+        }
+
+        return type.cast(sequencer);
+    }
+
     /**
      * Create a new SequenceBarrier to be used by an EventProcessor to track which messages
      * are available to be read from the ring buffer given a list of sequences to track.
@@ -428,6 +508,19 @@ public final class RingBuffer<E> extends RingBufferFields<E> implements Cursored
         return sequencer.newBarrier(sequencesToTrack);
     }
 
+    /**
+     * Create a new SequenceBarrier that waits with its own strategy instead of the ring buffer's, e.g. to let a
+     * latency critical processor busy spin while others on the same ring buffer block.
+     *
+     * @param waitStrategy     used by processors waiting on the barrier.
+     * @param sequencesToTrack the additional sequences to track
+     * @return A sequence barrier that will track the specified sequences.
+     */
+    public SequenceBarrier newBarrier(WaitStrategy waitStrategy, Sequence... sequencesToTrack)
+    {
+        return barrierWaitStrategies.newBarrier(waitStrategy, sequencesToTrack);
+    }
+
     /**
      * Creates an event poller for this ring buffer gated on the supplied sequences.
      *
@@ -475,6 +568,17 @@ public final class RingBuffer<E> extends RingBufferFields<E> implements Cursored
         return sequencer.hasAvailableCapacity(requiredCapacity);
     }
 
+    /**
+     * Create a claim for publishing without a translator.  The claim is owned by the calling producer thread,
+     * which should keep it and reuse it for every publication.
+     *
+     * @return a new claim on this ring buffer.
+     * @see EventClaim
+     */
+    public EventClaim<E> newClaim()
+    {
+        return new EventClaim<E>(this);
+    }
 
     /**
      * @see com.lmax.disruptor.EventSink#publishEvent(com.lmax.disruptor.EventTranslator)
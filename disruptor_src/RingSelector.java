@@ -0,0 +1,314 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.Arrays;
+
+/**
+ * <p>Multiplexes a number of {@link EventPoller}s onto a single consumer thread.</p>
+ *
+ * <p>Each call to {@link #selectNow()} visits every registered poller once, starting one place further round
+ * on each pass so that no ring is favoured, and hands at most <code>batchSize</code> events from each ring to
+ * its handler.  {@link #select()} additionally waits, using the supplied {@link WaitStrategy}, until the cursor
+ * of any registered ring moves.</p>
+ *
+ * <p>For blocking wait strategies the rings must be created with the same {@link WaitStrategy} instance that is
+ * given to the selector, otherwise their producers will not wake it.</p>
+ * 一个消费者线程同时轮询多个EventPoller, 公平轮转并限制每个RingBuffer单次处理的批量大小.
+ */
+public final class RingSelector
+{
+    private final WaitStrategy waitStrategy;
+    private final int batchSize;
+    private final CursorProgress progress = new CursorProgress();
+    private final SelectorBarrier barrier = new SelectorBarrier();
+    private volatile Registration<?>[] registrations = new Registration<?>[0];
+    private int nextStart = 0;
+
+    /**
+     * @param waitStrategy used to wait in {@link #select()} when no ring has events available.
+     * @param batchSize    maximum number of events handled from one ring before moving on to the next.
+     */
+    public RingSelector(final WaitStrategy waitStrategy, final int batchSize)
+    {
+        if (batchSize < 1)
+        {
+            throw new IllegalArgumentException("batchSize must be > 0");
+        }
+
+        this.waitStrategy = waitStrategy;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Register a poller with this selector.
+     *
+     * @param poller   to poll.
+     * @param cursored the ring buffer (or sequencer) the poller reads from, used to detect new events.
+     * @param handler  to receive events from the poller.
+     * @param <T>      the event type of the ring buffer.
+     */
+    public <T> void register(
+        final EventPoller<T> poller, final Cursored cursored, final EventPoller.Handler<? super T> handler)
+    {
+        final Registration<T> registration = new Registration<T>(poller, cursored, handler);
+        synchronized (this)
+        {
+            final Registration<?>[] current = registrations;
+            final Registration<?>[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = registration;
+            registrations = updated;
+        }
+    }
+
+    /**
+     * Remove a previously registered poller.
+     *
+     * @param poller to remove.
+     * @return true if the poller was registered.
+     */
+    public boolean remove(final EventPoller<?> poller)
+    {
+        synchronized (this)
+        {
+            final Registration<?>[] current = registrations;
+            for (int i = 0; i < current.length; i++)
+            {
+                if (current[i].poller == poller)
+                {
+                    final Registration<?>[] updated = new Registration<?>[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    registrations = updated;
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Make a single fair pass over all registered pollers without waiting.
+     *
+     * @return the number of events handled.
+     * @throws Exception if a handler throws.
+     */
+    public int selectNow() throws Exception
+    {
+        final Registration<?>[] registrations = this.registrations;
+        final int size = registrations.length;
+        if (0 == size)
+        {
+            return 0;
+        }
+
+        final int start = nextStart < size ? nextStart : 0;
+        nextStart = start + 1;
+
+        int handled = 0;
+        boolean gating = false;
+        for (int i = 0; i < size; i++)
+        {
+            int index = start + i;
+            if (index >= size)
+            {
+                index -= size;
+            }
+
+            final Registration<?> registration = registrations[index];
+            final EventPoller.PollState state = registration.poll(batchSize);
+            handled += registration.handled;
+            gating |= EventPoller.PollState.GATING == state;
+        }
+
+        barrier.gating = gating;
+        return handled;
+    }
+
+    /**
+     * Handle available events, waiting for any registered ring to advance if none are available.
+     *
+     * @return the number of events handled, 0 if the wait timed out or the selector was halted.
+     * @throws Exception if a handler throws.
+     */
+    public int select() throws Exception
+    {
+        barrier.checkAlert();
+
+        while (true)
+        {
+            final long observed = progress.get();
+            final int handled = selectNow();
+            if (handled > 0)
+            {
+                return handled;
+            }
+
+            if (barrier.gating)
+            {
+                // events are published but held back by dependent consumers, which do not signal
+                Thread.yield();
+                barrier.checkAlert();
+                continue;
+            }
+
+            try
+            {
+                waitStrategy.waitFor(observed + 1, progress, progress, barrier);
+            }
+            catch (final AlertException e)
+            {
+                return 0;
+            }
+            catch (final TimeoutException e)
+            {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Stop any thread waiting in {@link #select()}.  Subsequent calls to {@link #select()} return immediately
+     * until {@link #clearHalt()} is called.
+     */
+    public void halt()
+    {
+        barrier.alert();
+    }
+
+    /**
+     * Allow {@link #select()} to wait again after {@link #halt()}.
+     */
+    public void clearHalt()
+    {
+        barrier.clearAlert();
+    }
+
+    private final class CursorProgress extends Sequence
+    {
+        /**
+         * Sum of the cursors of all registered rings, moves forward whenever any of them is claimed into.
+         */
+        @Override
+        public long get()
+        {
+            final Registration<?>[] registrations = RingSelector.this.registrations;
+            long sum = 0;
+            for (int i = 0, n = registrations.length; i < n; i++)
+            {
+                sum += registrations[i].cursored.getCursor();
+            }
+
+            return sum;
+        }
+
+        @Override
+        public void set(final long value)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean compareAndSet(final long expectedValue, final long newValue)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long addAndGet(final long increment)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final class SelectorBarrier implements SequenceBarrier
+    {
+        private volatile boolean alerted = false;
+        private boolean gating = false;
+
+        @Override
+        public long waitFor(final long sequence)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getCursor()
+        {
+            return progress.get();
+        }
+
+        @Override
+        public boolean isAlerted()
+        {
+            return alerted;
+        }
+
+        @Override
+        public void alert()
+        {
+            alerted = true;
+            waitStrategy.signalAllWhenBlocking();
+        }
+
+        @Override
+        public void clearAlert()
+        {
+            alerted = false;
+        }
+
+        @Override
+        public void checkAlert() throws AlertException
+        {
+            if (alerted)
+            {
+                throw AlertException.INSTANCE;
+            }
+        }
+    }
+
+    private static final class Registration<T> implements EventPoller.Handler<T>
+    {
+        private final EventPoller<T> poller;
+        private final Cursored cursored;
+        private final EventPoller.Handler<? super T> handler;
+        private int remaining;
+        private int handled;
+
+        Registration(final EventPoller<T> poller, final Cursored cursored, final EventPoller.Handler<? super T> handler)
+        {
+            this.poller = poller;
+            this.cursored = cursored;
+            this.handler = handler;
+        }
+
+        EventPoller.PollState poll(final int limit) throws Exception
+        {
+            remaining = limit;
+            handled = 0;
+            return poller.poll(this);
+        }
+
+        @Override
+        public boolean onEvent(final T event, final long sequence, final boolean endOfBatch) throws Exception
+        {
+            handled++;
+            final boolean more = handler.onEvent(event, sequence, endOfBatch || remaining == 1);
+            return more && --remaining > 0;
+        }
+    }
+}
@@ -21,10 +21,11 @@ import com.lmax.disruptor.util.Util;
 
 /**
  * 左边缓存行填充.
+ * 填充120字节而不是56字节: 开启相邻缓存行预取(adjacent-line prefetch)的CPU上, 伪共享的有效范围是128字节.
  */
 class LhsPadding
 {
-    protected long p1, p2, p3, p4, p5, p6, p7;
+    protected long p1, p2, p3, p4, p5, p6, p7, p8, p9, p10, p11, p12, p13, p14, p15;
 }
 
 /**
@@ -40,7 +41,7 @@ class Value extends LhsPadding
  */
 class RhsPadding extends Value
 {
-    protected long p9, p10, p11, p12, p13, p14, p15;
+    protected long p17, p18, p19, p20, p21, p22, p23, p24, p25, p26, p27, p28, p29, p30, p31;
 }
 
 /**
@@ -49,7 +50,9 @@ class RhsPadding extends Value
  * of concurrent operations including CAS and order writes.
  *
  * <p>Also attempts to be more efficient with regards to false
- * sharing by adding padding around the volatile field.
+ * sharing by adding padding around the volatile field.  The padding
+ * covers 128 bytes either side so that CPUs which prefetch cache lines
+ * in adjacent pairs do not reintroduce false sharing.
  */
  /**
  * 主要用于记录/追踪生产者和消费者在RingBuffer上的位置.
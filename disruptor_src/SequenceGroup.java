@@ -17,8 +17,6 @@ package com.lmax.disruptor;
 
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
-import com.lmax.disruptor.util.Util;
-
 /**
  * A {@link Sequence} group that can dynamically have {@link Sequence}s added and removed while being
  * thread safe.
@@ -31,6 +29,8 @@ public final class SequenceGroup extends Sequence
     private static final AtomicReferenceFieldUpdater<SequenceGroup, Sequence[]> SEQUENCE_UPDATER =
         AtomicReferenceFieldUpdater.newUpdater(SequenceGroup.class, Sequence[].class, "sequences");
     private volatile Sequence[] sequences = new Sequence[0];
+    // index of the sequence that held the minimum when the cached minimum was last computed
+    private int laggard = 0;
 
     /**
      * Default Constructor
@@ -42,13 +42,52 @@ public final class SequenceGroup extends Sequence
 
     /**
      * Get the minimum sequence value for the group.
+     * <p>
+     * As with {@link FixedSequenceGroup#get()} the last minimum is cached along with the sequence that held
+     * it, and the group is only rescanned once that sequence has moved.  Sequences added while running start
+     * at the cursor and removing a sequence can only raise the minimum, so the cache stays valid across
+     * membership changes.
      *
      * @return the minimum sequence value for the group.
      */
     @Override
     public long get()
     {
-        return Util.getMinimumSequence(sequences);
+        final Sequence[] sequences = this.sequences;
+        final int laggard = this.laggard;
+        if (laggard < sequences.length)
+        {
+            final long cachedMinimum = super.get();
+            if (sequences[laggard].get() == cachedMinimum)
+            {
+                return cachedMinimum;
+            }
+        }
+
+        return rescan(sequences);
+    }
+
+    private long rescan(final Sequence[] sequences)
+    {
+        long minimum = Long.MAX_VALUE;
+        int index = 0;
+        for (int i = 0, n = sequences.length; i < n; i++)
+        {
+            final long value = sequences[i].get();
+            if (value < minimum)
+            {
+                minimum = value;
+                index = i;
+            }
+        }
+
+        if (0 != sequences.length)
+        {
+            laggard = index;
+            super.set(minimum);
+        }
+
+        return minimum;
     }
 
     /**
@@ -65,6 +104,7 @@ public final class SequenceGroup extends Sequence
         {
             sequences[i].set(value);
         }
+        rescan(sequences);
     }
 
     /**
@@ -89,6 +129,9 @@ public final class SequenceGroup extends Sequence
             newSequences[oldSize] = sequence;
         }
         while (!SEQUENCE_UPDATER.compareAndSet(this, oldSequences, newSequences));
+
+        // the added sequence may be behind the cached minimum
+        rescan(newSequences);
     }
 
     /**
@@ -113,6 +156,14 @@ public final class SequenceGroup extends Sequence
         return sequences.length;
     }
 
+    /**
+     * @return the current members of the group, the array must not be modified.
+     */
+    Sequence[] getSequences()
+    {
+        return sequences;
+    }
+
     /**
      * Adds a sequence to the sequence group after threads have started to publish to
      * the Disruptor.  It will set the sequences to cursor value of the ringBuffer
@@ -0,0 +1,566 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+import sun.misc.Unsafe;
+
+import com.lmax.disruptor.util.Util;
+
+/**
+ * <p>Multi producer {@link Sequencer} whose state lives in a memory mapped file, typically under
+ * <code>/dev/shm</code>, so that a ring buffer can be shared by several processes on the same host.  The
+ * cursor, a fixed number of consumer gating sequences and an availability array, as used by
+ * {@link MultiProducerSequencer}, are all held in the mapping, followed by the event slots themselves.</p>
+ *
+ * <p>One process {@link #create(File, int, int, int, WaitStrategy) creates} the file and others
+ * {@link #attach(File, WaitStrategy) attach} to it.  Each process builds its own view with
+ * {@link #newRingBuffer()}, a ring buffer of {@link ByteBuffer} slices over the event slots, so events are
+ * written and read in place.  Consumers in any process claim a gating slot with {@link #joinConsumer()} (or
+ * {@link #newPoller(DataProvider, Sequence...)}) and then use the usual barrier and poller semantics.</p>
+ *
+ * <p>Blocking wait strategies signal through in process locks and cannot wake a thread in another process,
+ * use a busy spin, yielding or sleeping strategy.  Gating sequences added with
+ * {@link #addGatingSequences(Sequence...)} that are not mapped slots only gate producers in the calling process.</p>
+ * 游标, 消费者门控序号和可用性数组都存放在内存映射文件中的多生产者Sequencer, 同一主机上的多个进程可以共享同一个RingBuffer,
+ * 直接在映射内存中读写事件, 不需要再序列化到socket. 只能使用非阻塞的等待策略.
+ *
+ * <pre>
+ * header      magic, buffer size, slot size, consumer count      128 bytes
+ * cursor      long                                               128 bytes
+ * gating      one long per consumer slot                         128 bytes each
+ * available   one int per event slot                             rounded up to 128 bytes
+ * events      slotSize bytes per event slot
+ * </pre>
+ */
+public final class SharedMemorySequencer implements Sequencer
+{
+    private static final Unsafe UNSAFE = Util.getUnsafe();
+    private static final AtomicReferenceFieldUpdater<SharedMemorySequencer, Sequence[]> SEQUENCE_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater(SharedMemorySequencer.class, Sequence[].class, "gatingSequences");
+
+    private static final int MAGIC = 0x44535231;
+    private static final int LINE = 128;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int BUFFER_SIZE_OFFSET = 4;
+    private static final int SLOT_SIZE_OFFSET = 8;
+    private static final int CONSUMER_COUNT_OFFSET = 12;
+    private static final int CURSOR_OFFSET = LINE;
+    private static final int GATING_OFFSET = 2 * LINE;
+
+    /**
+     * Value of a gating slot that is not in use.
+     */
+    public static final long INACTIVE = Long.MAX_VALUE;
+
+    private final MappedByteBuffer buffer;
+    private final int bufferSize;
+    private final int slotSize;
+    private final WaitStrategy waitStrategy;
+    private final Sequence cursor;
+    private final MappedSequence[] consumerSlots;
+    private final long availableAddress;
+    private final int eventsOffset;
+    private final int indexMask;
+    private final int indexShift;
+    private final Sequence gatingSequenceCache = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+    private final BarrierWaitStrategies barrierWaitStrategies;
+    private volatile Sequence[] gatingSequences = new Sequence[0];
+
+    private SharedMemorySequencer(final MappedByteBuffer buffer, final WaitStrategy waitStrategy)
+    {
+        this.buffer = buffer;
+        this.bufferSize = buffer.getInt(BUFFER_SIZE_OFFSET);
+        this.slotSize = buffer.getInt(SLOT_SIZE_OFFSET);
+        this.waitStrategy = waitStrategy;
+        this.cursor = new MappedSequence(buffer, CURSOR_OFFSET);
+        this.barrierWaitStrategies = new BarrierWaitStrategies(this, cursor, waitStrategy);
+
+        final int consumerCount = buffer.getInt(CONSUMER_COUNT_OFFSET);
+        this.consumerSlots = new MappedSequence[consumerCount];
+        for (int i = 0; i < consumerCount; i++)
+        {
+            consumerSlots[i] = new MappedSequence(buffer, GATING_OFFSET + i * LINE);
+        }
+
+        final int availableOffset = availableOffset(consumerCount);
+        this.availableAddress = Util.getAddressFromDirectByteBuffer(buffer) + availableOffset;
+        this.eventsOffset = eventsOffset(availableOffset, bufferSize);
+        this.indexMask = bufferSize - 1;
+        this.indexShift = Util.log2(bufferSize);
+    }
+
+    /**
+     * Create (or replace) a shared ring buffer file and map it.
+     *
+     * @param file          to create, e.g. under <code>/dev/shm</code>.
+     * @param bufferSize    number of event slots, must be a power of 2.
+     * @param slotSize      size of each event slot in bytes.
+     * @param consumerCount maximum number of consumers, across all processes, that may gate the producers.
+     * @param waitStrategy  for consumers in this process, must not rely on signalling.
+     * @return the sequencer for the created file.
+     * @throws IOException if the file cannot be created or mapped.
+     */
+    public static SharedMemorySequencer create(
+        final File file, final int bufferSize, final int slotSize, final int consumerCount,
+        final WaitStrategy waitStrategy) throws IOException
+    {
+        if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1)
+        {
+            throw new IllegalArgumentException("bufferSize must be a power of 2");
+        }
+        if (slotSize < 1 || consumerCount < 1)
+        {
+            throw new IllegalArgumentException("slotSize and consumerCount must be > 0");
+        }
+
+        final long length = (long) eventsOffset(availableOffset(consumerCount), bufferSize) + (long) bufferSize * slotSize;
+        if (length > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("shared ring buffer must not exceed 2GB");
+        }
+
+        final MappedByteBuffer buffer = map(file, length, true);
+        buffer.putInt(BUFFER_SIZE_OFFSET, bufferSize);
+        buffer.putInt(SLOT_SIZE_OFFSET, slotSize);
+        buffer.putInt(CONSUMER_COUNT_OFFSET, consumerCount);
+
+        final SharedMemorySequencer sequencer = new SharedMemorySequencer(buffer, waitStrategy);
+        sequencer.cursor.set(Sequencer.INITIAL_CURSOR_VALUE);
+        for (final MappedSequence slot : sequencer.consumerSlots)
+        {
+            slot.set(INACTIVE);
+        }
+        for (int i = 0; i < bufferSize; i++)
+        {
+            sequencer.setAvailableBufferValue(i, -1);
+        }
+
+        // written last, attach() rejects the file until it is set
+        UNSAFE.putIntVolatile(null, Util.getAddressFromDirectByteBuffer(buffer) + MAGIC_OFFSET, MAGIC);
+
+        return sequencer;
+    }
+
+    /**
+     * Map an existing shared ring buffer file created by {@link #create(File, int, int, int, WaitStrategy)}.
+     *
+     * @param file         to attach to.
+     * @param waitStrategy for consumers in this process, must not rely on signalling.
+     * @return the sequencer for the file.
+     * @throws IOException if the file cannot be mapped or is not a shared ring buffer.
+     */
+    public static SharedMemorySequencer attach(final File file, final WaitStrategy waitStrategy) throws IOException
+    {
+        final MappedByteBuffer buffer = map(file, file.length(), false);
+        if (buffer.capacity() < GATING_OFFSET ||
+            MAGIC != UNSAFE.getIntVolatile(null, Util.getAddressFromDirectByteBuffer(buffer) + MAGIC_OFFSET))
+        {
+            throw new IOException("Not an initialised shared ring buffer: " + file);
+        }
+
+        return new SharedMemorySequencer(buffer, waitStrategy);
+    }
+
+    private static MappedByteBuffer map(final File file, final long length, final boolean create) throws IOException
+    {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try
+        {
+            if (create)
+            {
+                randomAccessFile.setLength(0);
+                randomAccessFile.setLength(length);
+            }
+
+            // the mapping remains valid once the file is closed
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    private static int availableOffset(final int consumerCount)
+    {
+        return GATING_OFFSET + consumerCount * LINE;
+    }
+
+    private static int eventsOffset(final int availableOffset, final int bufferSize)
+    {
+        final int availableLength = bufferSize * 4;
+        return availableOffset + (availableLength + LINE - 1) / LINE * LINE;
+    }
+
+    /**
+     * Create a ring buffer over the event slots of the shared file.  Each event is a {@link ByteBuffer} slice of
+     * <code>slotSize</code> bytes; the slices are local to this process, so use absolute gets and puts or reset
+     * the position before use.
+     *
+     * @return a ring buffer using this sequencer.
+     */
+    public RingBuffer<ByteBuffer> newRingBuffer()
+    {
+        return new RingBuffer<ByteBuffer>(new EventFactory<ByteBuffer>()
+        {
+            private int index = 0;
+
+            @Override
+            public ByteBuffer newInstance()
+            {
+                final int offset = eventsOffset + index++ * slotSize;
+                final ByteBuffer slot = buffer.duplicate();
+                slot.limit(offset + slotSize);
+                slot.position(offset);
+                return slot.slice();
+            }
+        }, this, barrierWaitStrategies);
+    }
+
+    /**
+     * Claim a free consumer gating slot.  The returned sequence starts at the current cursor and gates the
+     * producers of every process until it is passed to {@link #removeGatingSequence(Sequence)}.
+     *
+     * @return the mapped sequence of the claimed slot.
+     * @throws IllegalStateException if every slot is in use.
+     */
+    public Sequence joinConsumer()
+    {
+        for (final MappedSequence slot : consumerSlots)
+        {
+            if (INACTIVE == slot.get() && slot.compareAndSet(INACTIVE, cursor.get()))
+            {
+                slot.set(cursor.get());
+                return slot;
+            }
+        }
+
+        throw new IllegalStateException("All " + consumerSlots.length + " consumer slots are in use");
+    }
+
+    /**
+     * Free a consumer slot by index, e.g. one held by a process that has died.
+     *
+     * @param slot index of the consumer slot.
+     */
+    public void releaseConsumerSlot(final int slot)
+    {
+        consumerSlots[slot].set(INACTIVE);
+    }
+
+    /**
+     * @return the number of consumer slots in the shared file.
+     */
+    public int getConsumerSlotCount()
+    {
+        return consumerSlots.length;
+    }
+
+    /**
+     * @return the size of each event slot in bytes.
+     */
+    public int getSlotSize()
+    {
+        return slotSize;
+    }
+
+    @Override
+    public long getCursor()
+    {
+        return cursor.get();
+    }
+
+    @Override
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    @Override
+    public boolean hasAvailableCapacity(final int requiredCapacity)
+    {
+        return hasAvailableCapacity(requiredCapacity, cursor.get());
+    }
+
+    private boolean hasAvailableCapacity(final int requiredCapacity, final long cursorValue)
+    {
+        final long wrapPoint = (cursorValue + requiredCapacity) - bufferSize;
+        final long cachedGatingSequence = gatingSequenceCache.get();
+
+        if (wrapPoint > cachedGatingSequence || cachedGatingSequence > cursorValue)
+        {
+            final long minSequence = getMinimumSequence(cursorValue);
+            gatingSequenceCache.set(minSequence);
+
+            if (wrapPoint > minSequence)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public long remainingCapacity()
+    {
+        final long produced = cursor.get();
+        final long consumed = getMinimumSequence(produced);
+        return getBufferSize() - (produced - consumed);
+    }
+
+    @Override
+    public long next()
+    {
+        return next(1);
+    }
+
+    @Override
+    public long next(final int n)
+    {
+        if (n < 1)
+        {
+            throw new IllegalArgumentException("n must be > 0");
+        }
+
+        long current;
+        long next;
+
+        do
+        {
+            current = cursor.get();
+            next = current + n;
+
+            final long wrapPoint = next - bufferSize;
+            final long cachedGatingSequence = gatingSequenceCache.get();
+
+            if (wrapPoint > cachedGatingSequence || cachedGatingSequence > current)
+            {
+                final long gatingSequence = getMinimumSequence(current);
+
+                if (wrapPoint > gatingSequence)
+                {
+                    barrierWaitStrategies.signalAllWhenBlocking();
+                    LockSupport.parkNanos(1);
+                    continue;
+                }
+
+                gatingSequenceCache.set(gatingSequence);
+            }
+            else if (cursor.compareAndSet(current, next))
+            {
+                break;
+            }
+        }
+        while (true);
+
+        return next;
+    }
+
+    @Override
+    public long tryNext() throws InsufficientCapacityException
+    {
+        return tryNext(1);
+    }
+
+    @Override
+    public long tryNext(final int n) throws InsufficientCapacityException
+    {
+        if (n < 1)
+        {
+            throw new IllegalArgumentException("n must be > 0");
+        }
+
+        long current;
+        long next;
+
+        do
+        {
+            current = cursor.get();
+            next = current + n;
+
+            if (!hasAvailableCapacity(n, current))
+            {
+                throw InsufficientCapacityException.INSTANCE;
+            }
+        }
+        while (!cursor.compareAndSet(current, next));
+
+        return next;
+    }
+
+    @Override
+    public void claim(final long sequence)
+    {
+        cursor.set(sequence);
+    }
+
+    @Override
+    public void publish(final long sequence)
+    {
+        setAvailable(sequence);
+        barrierWaitStrategies.signalAllWhenBlocking();
+    }
+
+    @Override
+    public void publish(final long lo, final long hi)
+    {
+        for (long l = lo; l <= hi; l++)
+        {
+            setAvailable(l);
+        }
+        barrierWaitStrategies.signalAllWhenBlocking();
+    }
+
+    private void setAvailable(final long sequence)
+    {
+        setAvailableBufferValue(calculateIndex(sequence), calculateAvailabilityFlag(sequence));
+    }
+
+    private void setAvailableBufferValue(final int index, final int flag)
+    {
+        UNSAFE.putOrderedInt(null, availableAddress + ((long) index << 2), flag);
+    }
+
+    @Override
+    public boolean isAvailable(final long sequence)
+    {
+        final int index = calculateIndex(sequence);
+        final int flag = calculateAvailabilityFlag(sequence);
+        return UNSAFE.getIntVolatile(null, availableAddress + ((long) index << 2)) == flag;
+    }
+
+    @Override
+    public long getHighestPublishedSequence(final long lowerBound, final long availableSequence)
+    {
+        for (long sequence = lowerBound; sequence <= availableSequence; sequence++)
+        {
+            if (!isAvailable(sequence))
+            {
+                return sequence - 1;
+            }
+        }
+
+        return availableSequence;
+    }
+
+    private int calculateAvailabilityFlag(final long sequence)
+    {
+        return (int) (sequence >>> indexShift);
+    }
+
+    private int calculateIndex(final long sequence)
+    {
+        return ((int) sequence) & indexMask;
+    }
+
+    /**
+     * Add gating sequences local to this process.  Mapped slots obtained from {@link #joinConsumer()} already
+     * gate the producers and are ignored.
+     *
+     * @see Sequencer#addGatingSequences(Sequence...)
+     */
+    @Override
+    public void addGatingSequences(final Sequence... gatingSequences)
+    {
+        int local = 0;
+        final Sequence[] toAdd = new Sequence[gatingSequences.length];
+        for (final Sequence sequence : gatingSequences)
+        {
+            if (-1 == slotIndexOf(sequence))
+            {
+                toAdd[local++] = sequence;
+            }
+        }
+
+        if (0 != local)
+        {
+            SequenceGroups.addSequences(this, SEQUENCE_UPDATER, this, Arrays.copyOf(toAdd, local));
+        }
+    }
+
+    /**
+     * Remove a gating sequence, a mapped slot is released for use by another consumer.
+     *
+     * @see Sequencer#removeGatingSequence(Sequence)
+     */
+    @Override
+    public boolean removeGatingSequence(final Sequence sequence)
+    {
+        final int slot = slotIndexOf(sequence);
+        if (-1 != slot)
+        {
+            releaseConsumerSlot(slot);
+            return true;
+        }
+
+        return SequenceGroups.removeSequence(this, SEQUENCE_UPDATER, sequence);
+    }
+
+    private int slotIndexOf(final Sequence sequence)
+    {
+        for (int i = 0; i < consumerSlots.length; i++)
+        {
+            if (consumerSlots[i] == sequence)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public long getMinimumSequence()
+    {
+        return getMinimumSequence(cursor.get());
+    }
+
+    private long getMinimumSequence(final long cursorValue)
+    {
+        // inactive slots hold Long.MAX_VALUE and so never lower the minimum
+        final long minimum = Util.getMinimumSequence(consumerSlots, cursorValue);
+        return Util.getMinimumSequence(gatingSequences, minimum);
+    }
+
+    @Override
+    public SequenceBarrier newBarrier(final Sequence... sequencesToTrack)
+    {
+        return new ProcessingSequenceBarrier(this, waitStrategy, cursor, sequencesToTrack);
+    }
+
+
+    /**
+     * Creates an event poller that reads from a newly claimed consumer slot, see {@link #joinConsumer()}.
+     *
+     * @see Sequencer#newPoller(DataProvider, Sequence...)
+     */
+    @Override
+    public <T> EventPoller<T> newPoller(final DataProvider<T> dataProvider, final Sequence... gatingSequences)
+    {
+        return EventPoller.newInstance(dataProvider, this, joinConsumer(), cursor, gatingSequences);
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.lmax.disruptor;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.LockSupport;
 
 import com.lmax.disruptor.util.Util;
@@ -24,7 +25,7 @@ import com.lmax.disruptor.util.Util;
  */
 abstract class SingleProducerSequencerPad extends AbstractSequencer
 {
-    protected long p1, p2, p3, p4, p5, p6, p7;
+    protected long p1, p2, p3, p4, p5, p6, p7, p8, p9, p10, p11, p12, p13, p14, p15;
 
     public SingleProducerSequencerPad(int bufferSize, WaitStrategy waitStrategy)
     {
@@ -50,6 +51,14 @@ abstract class SingleProducerSequencerFields extends SingleProducerSequencerPad
 
     // cachedValue表示上一次消费者消费数据时的位置序号,一开始是-1.
     protected long cachedValue = Sequence.INITIAL_VALUE;
+
+    // 批量发布: 累计publishBatchSize个事件, 或发布时发现超过publishDelayNanos, 或调用flush()才更新cursor, 为1时立即发布.
+    protected int publishBatchSize = 1;
+    protected long publishDelayNanos = Long.MAX_VALUE;
+    // 已发布但还没有写入cursor的最大序号, 以及累计的事件数和第一个事件的时间
+    protected long deferredSequence = Sequence.INITIAL_VALUE;
+    protected int deferredCount = 0;
+    protected long deferredSinceNanos;
 }
 
 /**
@@ -57,7 +66,7 @@ abstract class SingleProducerSequencerFields extends SingleProducerSequencerPad
  * Not safe for use from multiple threads as it does not implement any barriers.</p>
  * <p>
  * <p>Note on {@link Sequencer#getCursor()}:  With this sequencer the cursor value is updated after the call
- * to {@link Sequencer#publish(long)} is made.
+ * to {@link Sequencer#publish(long)} is made, or with deferred publication on the following {@link #flush()}.
  */
 /**
  * 用于单生产者模式场景, 保存/追踪生产者和消费者的位置序号。
@@ -67,7 +76,7 @@ abstract class SingleProducerSequencerFields extends SingleProducerSequencerPad
 public final class SingleProducerSequencer extends SingleProducerSequencerFields
 {
     // 右边缓存行填充数据.
-    protected long p1, p2, p3, p4, p5, p6, p7;
+    protected long p1, p2, p3, p4, p5, p6, p7, p8, p9, p10, p11, p12, p13, p14, p15;
 
     /**
      * Construct a Sequencer with the selected wait strategy and buffer size.
@@ -83,6 +92,51 @@ public final class SingleProducerSequencer extends SingleProducerSequencerFields
         super(bufferSize, waitStrategy);
     }
 
+    /**
+     * <p>Batch publication: {@link #publish(long)} and {@link #publish(long, long)} only record progress, and the
+     * cursor, which every spinning consumer polls, is written once <code>maxEvents</code> events are pending, when
+     * a publication finds the oldest pending event has waited <code>maxDelay</code>, or on {@link #flush()}.
+     * Bursts of events then cost one store to the cursor and one signal rather than one per publication.</p>
+     *
+     * <p>There is no timer: <code>maxDelay</code> is only checked by the next publication, so it does not bound how
+     * long events stay invisible once the producer goes idle.  The producer must call {@link #flush()} at the end
+     * of each burst, in particular before {@link com.lmax.disruptor.dsl.Disruptor#shutdown()} is called, which
+     * cannot see pending events and does not flush them, as the pending state belongs to the producer thread.
+     * Pending events are also flushed before the producer waits for capacity.  Must be called from the producer
+     * thread.</p>
+     * 批量发布: publish只在本地记录进度, 累计maxEvents个事件, 或发布时发现最早的事件已等待超过maxDelay, 或调用flush()时才更新cursor.
+     * 没有定时器, 生产者空闲时事件不会自动可见, 必须在每批结束时调用flush().
+     *
+     * @param maxEvents number of events after which the cursor is written, 1 to publish immediately.
+     * @param maxDelay  age of the oldest pending event after which the next publication writes the cursor.
+     * @param unit      of the delay.
+     */
+    public void setBatchedPublication(int maxEvents, long maxDelay, TimeUnit unit)
+    {
+        if (maxEvents < 1)
+        {
+            throw new IllegalArgumentException("maxEvents must be > 0");
+        }
+
+        flush();
+        this.publishBatchSize = maxEvents;
+        this.publishDelayNanos = unit.toNanos(maxDelay);
+    }
+
+    /**
+     * Make every event published so far visible to consumers.  Does nothing unless publication is batched, see
+     * {@link #setBatchedPublication(int, long, TimeUnit)}.  Must be called from the producer thread.
+     */
+    public void flush()
+    {
+        if (0 != deferredCount)
+        {
+            deferredCount = 0;
+            cursor.set(deferredSequence);
+            signalAllWhenBlocking();
+        }
+    }
+
     /**
      * @see Sequencer#hasAvailableCapacity(int)
      */
@@ -184,12 +238,16 @@ public final class SingleProducerSequencer extends SingleProducerSequencerFields
         // 只会在 https://github.com/LMAX-Exchange/disruptor/issues/76 情况下存在
         if (wrapPoint > cachedGatingSequence || cachedGatingSequence > nextValue)
         {
+            // 消费者看不到还没flush的事件, 等待之前必须先flush, 否则可能永远等不到空间
+            flush();
+
             long minSequence;
             //如果一直没有可用空间, 当前线程挂起, 不断循环检测，直到有可用空间。
             //循环判断生产者绕一圈之后，没有追上消费者的最小序列，如果还是追尾，则等待1纳秒，目前就是简单的等待，看注释是想在以后通过waitStrategy来等待
             while (wrapPoint > (minSequence = Util.getMinimumSequence(gatingSequences, nextValue)))
             {
-                waitStrategy.signalAllWhenBlocking();
+                signalAllWhenBlocking();
+                onProducerBlocked();
                 LockSupport.parkNanos(1L); // TODO: Use waitStrategy to spin?  //作者可能想以后通过waitStrategy来等待
             }
 
@@ -232,6 +290,8 @@ public final class SingleProducerSequencer extends SingleProducerSequencerFields
         // 先调用hasAvailableCapacity函数判断是否能分配, 不能直接抛出异常.
         if (!hasAvailableCapacity(n))
         {
+            // 让消费者能看到未flush的事件, 调用方重试时才有可能成功
+            flush();
             throw InsufficientCapacityException.INSTANCE;
         }
 
@@ -283,11 +343,17 @@ public final class SingleProducerSequencer extends SingleProducerSequencerFields
     @Override
     public void publish(long sequence)
     {
+        if (1 != publishBatchSize)
+        {
+            publishBatched(sequence, 1);
+            return;
+        }
+
         // 首先更新生产者游标
         //cursor代表可以消费的sequence
         cursor.set(sequence);
         // 然后通知所有消费者, 数据可以被消费了.
-        waitStrategy.signalAllWhenBlocking();
+        signalAllWhenBlocking();
     }
 
     /**
@@ -299,9 +365,32 @@ public final class SingleProducerSequencer extends SingleProducerSequencerFields
     @Override
     public void publish(long lo, long hi)
     {
+        if (1 != publishBatchSize)
+        {
+            publishBatched(hi, (int) (hi - lo + 1));
+            return;
+        }
+
         publish(hi);
     }
 
+    private void publishBatched(long hi, int count)
+    {
+        deferredSequence = hi;
+        final boolean timed = Long.MAX_VALUE != publishDelayNanos;
+        if (0 == deferredCount && timed)
+        {
+            deferredSinceNanos = System.nanoTime();
+        }
+        deferredCount += count;
+
+        if (deferredCount >= publishBatchSize ||
+            (timed && System.nanoTime() - deferredSinceNanos >= publishDelayNanos))
+        {
+            flush();
+        }
+    }
+
     /**
      * @see Sequencer#isAvailable(long)
      */
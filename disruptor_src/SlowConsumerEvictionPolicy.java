@@ -0,0 +1,180 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Detaches consumers that hold producers back.  Installed with
+ * {@link AbstractSequencer#setEvictionPolicy(SlowConsumerEvictionPolicy)}, the policy is consulted while a producer
+ * is waiting for capacity.  A gating sequence whose lag behind the cursor has stayed at or above
+ * <code>lagThreshold</code> for <code>timeout</code> is removed with
+ * {@link Sequencer#removeGatingSequence(Sequence)} and marked as evicted, so one dead or stuck consumer cannot
+ * freeze every producer and every other consumer.</p>
+ *
+ * <p>The policy acts on the sequences added to the sequencer, so a consumer added as part of a
+ * {@link SequenceGroup} or {@link FixedSequenceGroup} is evicted with the rest of its group.  An evicted consumer
+ * reads events that may since have been overwritten; it should check {@link #isEvicted(Sequence)} and, once it is
+ * ready to continue, call {@link #rejoin(Sequence)}, which gates producers on it again from the current cursor.
+ * An event processor holds its next sequence locally, so it must be restarted after rejoining.</p>
+ *
+ * <p>Eviction only stops producers gating on a sequence.  Handlers downstream of an evicted consumer, whose
+ * barriers depend on its sequence, still gate on it and stop with it.  As the {@link com.lmax.disruptor.dsl.Disruptor}
+ * only gates producers on the last handlers of each chain, a stuck handler earlier in a chain gets the handlers
+ * after it evicted, and they stay stuck behind it.</p>
+ * 慢消费者淘汰策略: 生产者等待容量时检查各个门控序列, 落后超过阈值并持续超过指定时间的消费者会被移出门控序列并标记为已淘汰,
+ * 之后可以调用rejoin从当前游标处重新加入. 依赖被淘汰消费者的下游消费者仍然会等待它.
+ */
+public final class SlowConsumerEvictionPolicy
+{
+    private final long lagThreshold;
+    private final long timeoutNanos;
+    // time each lagging sequence was first seen at or above the threshold
+    private final Map<Sequence, Long> laggingSince = new IdentityHashMap<Sequence, Long>();
+    private final Set<Sequence> evicted =
+        Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Sequence, Boolean>()));
+    private AbstractSequencer sequencer;
+    private long nextCheckNanos = System.nanoTime();
+
+    /**
+     * @param lagThreshold number of events a consumer may lag behind the cursor without being considered slow,
+     *                     less than the buffer size of the sequencer the policy is installed on.
+     * @param timeout      how long a consumer may stay slow before it is evicted.
+     * @param unit         of the timeout.
+     */
+    public SlowConsumerEvictionPolicy(final long lagThreshold, final long timeout, final TimeUnit unit)
+    {
+        if (lagThreshold < 1)
+        {
+            throw new IllegalArgumentException("lagThreshold must be > 0");
+        }
+
+        this.lagThreshold = lagThreshold;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    synchronized void attach(final AbstractSequencer sequencer)
+    {
+        if (null != this.sequencer && sequencer != this.sequencer)
+        {
+            throw new IllegalStateException("Policy is already in use by another sequencer");
+        }
+
+        // a consumer can never lag by more than the buffer size, so it would never be evicted
+        if (lagThreshold >= sequencer.getBufferSize())
+        {
+            throw new IllegalArgumentException(
+                "lagThreshold must be < bufferSize, was " + lagThreshold + " for " + sequencer.getBufferSize());
+        }
+
+        this.sequencer = sequencer;
+    }
+
+    /**
+     * Called from the producer's wait loop.  Checks are rate limited to a fraction of the timeout, producers
+     * waiting in between return immediately.
+     */
+    synchronized void onProducerBlocked()
+    {
+        final long now = System.nanoTime();
+        if (now - nextCheckNanos < 0)
+        {
+            return;
+        }
+        nextCheckNanos = now + Math.max(1L, timeoutNanos >> 3);
+
+        final long cursor = sequencer.getCursor();
+        final Sequence[] members = sequencer.getGatingSequenceMembers();
+        final Map<Sequence, Long> stillLagging = new IdentityHashMap<Sequence, Long>();
+        for (final Sequence sequence : members)
+        {
+            if (cursor - sequence.get() < lagThreshold)
+            {
+                continue;
+            }
+
+            final Long since = laggingSince.get(sequence);
+            if (null == since)
+            {
+                stillLagging.put(sequence, now);
+            }
+            else if (now - since >= timeoutNanos)
+            {
+                evict(sequence);
+            }
+            else
+            {
+                stillLagging.put(sequence, since);
+            }
+        }
+
+        // forget consumers that have caught up, or are no longer gating
+        laggingSince.clear();
+        laggingSince.putAll(stillLagging);
+    }
+
+    private void evict(final Sequence sequence)
+    {
+        if (sequencer.removeGatingSequence(sequence))
+        {
+            evicted.add(sequence);
+        }
+    }
+
+    /**
+     * @param sequence the consumer's sequence.
+     * @return true if the consumer has been evicted and has not rejoined since.
+     */
+    public boolean isEvicted(final Sequence sequence)
+    {
+        return evicted.contains(sequence);
+    }
+
+    /**
+     * Gate producers on an evicted consumer again.  Its sequence is set to the current cursor, so the consumer
+     * continues with the next event published.
+     *
+     * @param sequence the consumer's sequence.
+     * @return false if the consumer was not evicted.
+     */
+    public boolean rejoin(final Sequence sequence)
+    {
+        if (!evicted.remove(sequence))
+        {
+            return false;
+        }
+
+        final AbstractSequencer sequencer;
+        synchronized (this)
+        {
+            sequencer = this.sequencer;
+        }
+        sequencer.addGatingSequences(sequence);
+        return true;
+    }
+
+    /**
+     * @return the number of consumers currently evicted.
+     */
+    public int getEvictedCount()
+    {
+        return evicted.size();
+    }
+}
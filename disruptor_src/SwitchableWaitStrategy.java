@@ -0,0 +1,241 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.Arrays;
+
+/**
+ * <p>Delegates to a wait strategy that can be replaced while the ring buffer is running, for instance to busy spin
+ * during trading hours and block overnight.  Use {@link #switchTo(WaitStrategy)}, or register the instance with an
+ * MBean server and set the {@link SwitchableWaitStrategyMBean#setWaitStrategy(String) WaitStrategy} attribute.</p>
+ *
+ * <p>Each strategy in use is a generation, retired by the next switch.  Waiters are handed a barrier that fails
+ * {@link SequenceBarrier#checkAlert()} once the generation it belongs to has been retired.  Every strategy checks
+ * the alert while it waits, so after a switch the previous strategy is signalled and all its waiters, spinning or
+ * blocked, leave it and wait again with the new one.</p>
+ *
+ * <p>The barrier handed to the delegate is immutable and created once per {@link SequenceBarrier} and generation,
+ * so it holds no per thread state and can be shared by the workers of a {@link WorkerPool}.  Until a switch, each
+ * call to {@link #waitFor(long, Sequence, Sequence, SequenceBarrier) waitFor} costs two volatile reads and a scan of
+ * the barriers seen so far, usually one or two, and each <code>checkAlert()</code> while waiting costs one extra
+ * volatile read of an unchanging field.</p>
+ * 可以在运行时切换的等待策略. 每个被使用的策略是一代, 切换时旧的一代被标记为退役, 其等待者因为屏障的checkAlert()失败而退出,
+ * 改用新策略继续等待. 包装屏障按SequenceBarrier和代创建一次且不可变, 不保存线程状态.
+ */
+public final class SwitchableWaitStrategy implements WaitStrategy, SwitchableWaitStrategyMBean
+{
+    private volatile Generation generation;
+
+    /**
+     * @param initial the strategy to wait with until the first switch.
+     */
+    public SwitchableWaitStrategy(final WaitStrategy initial)
+    {
+        if (null == initial)
+        {
+            throw new NullPointerException("initial");
+        }
+
+        this.generation = new Generation(initial);
+    }
+
+    @Override
+    public long waitFor(
+        final long sequence,
+        final Sequence cursor,
+        final Sequence dependentSequence,
+        final SequenceBarrier barrier) throws AlertException, InterruptedException, TimeoutException
+    {
+        while (true)
+        {
+            final Generation generation = this.generation;
+            try
+            {
+                return generation.strategy.waitFor(sequence, cursor, dependentSequence, generation.barrierFor(barrier));
+            }
+            catch (final AlertException e)
+            {
+                if (!generation.retired)
+                {
+                    throw e;
+                }
+                // switched while waiting, wait again with the new strategy
+            }
+        }
+    }
+
+    @Override
+    public void signalAllWhenBlocking()
+    {
+        generation.strategy.signalAllWhenBlocking();
+    }
+
+    /**
+     * Replace the strategy, waking every consumer waiting with the previous one.
+     *
+     * @param waitStrategy the strategy to wait with from now on.
+     */
+    public synchronized void switchTo(final WaitStrategy waitStrategy)
+    {
+        if (null == waitStrategy)
+        {
+            throw new NullPointerException("waitStrategy");
+        }
+
+        final Generation previous = generation;
+        generation = new Generation(waitStrategy);
+        previous.retired = true;
+        previous.strategy.signalAllWhenBlocking();
+    }
+
+    /**
+     * @return the strategy currently waited with.
+     */
+    public WaitStrategy getDelegate()
+    {
+        return generation.strategy;
+    }
+
+    @Override
+    public String getWaitStrategy()
+    {
+        return generation.strategy.getClass().getName();
+    }
+
+    @Override
+    public void setWaitStrategy(final String className)
+    {
+        final Object waitStrategy;
+        try
+        {
+            waitStrategy = Class.forName(className).getConstructor().newInstance();
+        }
+        catch (final Exception e)
+        {
+            throw new IllegalArgumentException("Cannot create " + className, e);
+        }
+
+        if (!(waitStrategy instanceof WaitStrategy))
+        {
+            throw new IllegalArgumentException(className + " is not a WaitStrategy");
+        }
+
+        switchTo((WaitStrategy) waitStrategy);
+    }
+
+    /**
+     * A strategy and the barriers handed to it, until the next switch retires it.
+     */
+    private static final class Generation
+    {
+        private final WaitStrategy strategy;
+        private volatile boolean retired = false;
+        private volatile SwitchAwareBarrier[] barriers = new SwitchAwareBarrier[0];
+
+        Generation(final WaitStrategy strategy)
+        {
+            this.strategy = strategy;
+        }
+
+        SwitchAwareBarrier barrierFor(final SequenceBarrier barrier)
+        {
+            final SwitchAwareBarrier[] barriers = this.barriers;
+            for (int i = 0, n = barriers.length; i < n; i++)
+            {
+                if (barriers[i].barrier == barrier)
+                {
+                    return barriers[i];
+                }
+            }
+
+            return register(barrier);
+        }
+
+        private synchronized SwitchAwareBarrier register(final SequenceBarrier barrier)
+        {
+            final SwitchAwareBarrier[] current = barriers;
+            for (final SwitchAwareBarrier existing : current)
+            {
+                if (existing.barrier == barrier)
+                {
+                    return existing;
+                }
+            }
+
+            final SwitchAwareBarrier created = new SwitchAwareBarrier(this, barrier);
+            final SwitchAwareBarrier[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = created;
+            barriers = updated;
+            return created;
+        }
+    }
+
+    /**
+     * Barrier handed to the delegate, failing its alert check once its generation has been retired.
+     */
+    private static final class SwitchAwareBarrier implements SequenceBarrier
+    {
+        private final Generation generation;
+        private final SequenceBarrier barrier;
+
+        SwitchAwareBarrier(final Generation generation, final SequenceBarrier barrier)
+        {
+            this.generation = generation;
+            this.barrier = barrier;
+        }
+
+        @Override
+        public void checkAlert() throws AlertException
+        {
+            if (generation.retired)
+            {
+                throw AlertException.INSTANCE;
+            }
+
+            barrier.checkAlert();
+        }
+
+        @Override
+        public long waitFor(final long sequence) throws AlertException, InterruptedException, TimeoutException
+        {
+            return barrier.waitFor(sequence);
+        }
+
+        @Override
+        public long getCursor()
+        {
+            return barrier.getCursor();
+        }
+
+        @Override
+        public boolean isAlerted()
+        {
+            return barrier.isAlerted();
+        }
+
+        @Override
+        public void alert()
+        {
+            barrier.alert();
+        }
+
+        @Override
+        public void clearAlert()
+        {
+            barrier.clearAlert();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+/**
+ * JMX management interface of {@link SwitchableWaitStrategy}.
+ * SwitchableWaitStrategy的JMX管理接口.
+ */
+public interface SwitchableWaitStrategyMBean
+{
+    /**
+     * @return the class name of the strategy currently waited with.
+     */
+    String getWaitStrategy();
+
+    /**
+     * Switch to a new instance of the named strategy, created with its no argument constructor.
+     *
+     * @param className of a {@link WaitStrategy} with a public no argument constructor.
+     * @throws IllegalArgumentException if the strategy cannot be created.
+     */
+    void setWaitStrategy(String className);
+}
@@ -0,0 +1,529 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Creates publishers bound to a single {@link RingBuffer} and translator, whose publish path is specialised
+ * for the translator's class.</p>
+ *
+ * <p>With many translator classes in use the <code>translateTo</code> call sites inside {@link RingBuffer} see
+ * all of them, become megamorphic and are no longer inlined.  Each publisher returned here is an instance of a
+ * private copy of a small template class, loaded once per translator class by its own class loader, so the JIT
+ * profiles its call site separately and sees exactly one translator class.  The copies are made at set up time
+ * and cached; the publish path itself is plain {@link RingBuffer#next()}, translate and
+ * {@link RingBuffer#publish(long)} and never allocates.</p>
+ *
+ * <p>The fixed arity publishers (up to three arguments) are also the allocation free alternative to
+ * {@link EventTranslatorVararg}, which needs an <code>Object[]</code> per publish.</p>
+ *
+ * <p>The cache holds the translator classes for the life of the class loader of the Disruptor.</p>
+ * 为每个翻译器类加载一份模板类的副本, 使发布路径上translateTo的调用点保持单态, 从而可以被JIT内联.
+ */
+public final class TranslatorPublishers
+{
+    private static final ConcurrentMap<String, byte[]> TEMPLATE_BYTES = new ConcurrentHashMap<String, byte[]>();
+    private static final ConcurrentMap<String, ConcurrentMap<Class<?>, Class<?>>> SPECIALISED =
+        new ConcurrentHashMap<String, ConcurrentMap<Class<?>, Class<?>>>();
+
+    private TranslatorPublishers()
+    {
+    }
+
+    /**
+     * Publishes events using a translator with no arguments.
+     *
+     * @param <E> the type of event used.
+     */
+    public interface Publisher<E>
+    {
+        /**
+         * Claim the next sequence, translate and publish, waiting for capacity if necessary.
+         */
+        void publish();
+
+        /**
+         * @return false if the ring buffer had no capacity, in which case nothing was published.
+         */
+        boolean tryPublish();
+    }
+
+    /**
+     * Publishes events using a translator with one argument.
+     *
+     * @param <E> the type of event used.
+     * @param <A> the type of the argument.
+     */
+    public interface OneArgPublisher<E, A>
+    {
+        /**
+         * @param arg0 passed to the translator.
+         */
+        void publish(A arg0);
+
+        /**
+         * @param arg0 passed to the translator.
+         * @return false if the ring buffer had no capacity, in which case nothing was published.
+         */
+        boolean tryPublish(A arg0);
+    }
+
+    /**
+     * Publishes events using a translator with two arguments.
+     *
+     * @param <E> the type of event used.
+     * @param <A> the type of the first argument.
+     * @param <B> the type of the second argument.
+     */
+    public interface TwoArgPublisher<E, A, B>
+    {
+        /**
+         * @param arg0 passed to the translator.
+         * @param arg1 passed to the translator.
+         */
+        void publish(A arg0, B arg1);
+
+        /**
+         * @param arg0 passed to the translator.
+         * @param arg1 passed to the translator.
+         * @return false if the ring buffer had no capacity, in which case nothing was published.
+         */
+        boolean tryPublish(A arg0, B arg1);
+    }
+
+    /**
+     * Publishes events using a translator with three arguments.
+     *
+     * @param <E> the type of event used.
+     * @param <A> the type of the first argument.
+     * @param <B> the type of the second argument.
+     * @param <C> the type of the third argument.
+     */
+    public interface ThreeArgPublisher<E, A, B, C>
+    {
+        /**
+         * @param arg0 passed to the translator.
+         * @param arg1 passed to the translator.
+         * @param arg2 passed to the translator.
+         */
+        void publish(A arg0, B arg1, C arg2);
+
+        /**
+         * @param arg0 passed to the translator.
+         * @param arg1 passed to the translator.
+         * @param arg2 passed to the translator.
+         * @return false if the ring buffer had no capacity, in which case nothing was published.
+         */
+        boolean tryPublish(A arg0, B arg1, C arg2);
+    }
+
+    /**
+     * @param ringBuffer to publish to.
+     * @param translator to translate with.
+     * @param <E>        the type of event used.
+     * @return a publisher specialised for the translator's class.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> Publisher<E> newPublisher(final RingBuffer<E> ringBuffer, final EventTranslator<E> translator)
+    {
+        return (Publisher<E>) newInstance(Template.class, EventTranslator.class, ringBuffer, translator);
+    }
+
+    /**
+     * @param ringBuffer to publish to.
+     * @param translator to translate with.
+     * @param <E>        the type of event used.
+     * @param <A>        the type of the argument.
+     * @return a publisher specialised for the translator's class.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E, A> OneArgPublisher<E, A> newPublisher(
+        final RingBuffer<E> ringBuffer, final EventTranslatorOneArg<E, A> translator)
+    {
+        return (OneArgPublisher<E, A>) newInstance(OneArgTemplate.class, EventTranslatorOneArg.class, ringBuffer, translator);
+    }
+
+    /**
+     * @param ringBuffer to publish to.
+     * @param translator to translate with.
+     * @param <E>        the type of event used.
+     * @param <A>        the type of the first argument.
+     * @param <B>        the type of the second argument.
+     * @return a publisher specialised for the translator's class.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E, A, B> TwoArgPublisher<E, A, B> newPublisher(
+        final RingBuffer<E> ringBuffer, final EventTranslatorTwoArg<E, A, B> translator)
+    {
+        return (TwoArgPublisher<E, A, B>) newInstance(TwoArgTemplate.class, EventTranslatorTwoArg.class, ringBuffer, translator);
+    }
+
+    /**
+     * @param ringBuffer to publish to.
+     * @param translator to translate with.
+     * @param <E>        the type of event used.
+     * @param <A>        the type of the first argument.
+     * @param <B>        the type of the second argument.
+     * @param <C>        the type of the third argument.
+     * @return a publisher specialised for the translator's class.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E, A, B, C> ThreeArgPublisher<E, A, B, C> newPublisher(
+        final RingBuffer<E> ringBuffer, final EventTranslatorThreeArg<E, A, B, C> translator)
+    {
+        return (ThreeArgPublisher<E, A, B, C>) newInstance(
+            ThreeArgTemplate.class, EventTranslatorThreeArg.class, ringBuffer, translator);
+    }
+
+    private static Object newInstance(
+        final Class<?> template, final Class<?> translatorType, final RingBuffer<?> ringBuffer, final Object translator)
+    {
+        try
+        {
+            return specialise(template, translator.getClass())
+                .getConstructor(RingBuffer.class, translatorType)
+                .newInstance(ringBuffer, translator);
+        }
+        catch (final Exception e)
+        {
+            throw new IllegalStateException("Unable to specialise " + template.getName(), e);
+        }
+    }
+
+    private static Class<?> specialise(final Class<?> template, final Class<?> translatorClass) throws IOException
+    {
+        final String name = template.getName();
+        ConcurrentMap<Class<?>, Class<?>> byTranslator = SPECIALISED.get(name);
+        if (null == byTranslator)
+        {
+            SPECIALISED.putIfAbsent(name, new ConcurrentHashMap<Class<?>, Class<?>>());
+            byTranslator = SPECIALISED.get(name);
+        }
+
+        Class<?> specialised = byTranslator.get(translatorClass);
+        if (null == specialised)
+        {
+            final ClassLoader loader = new TemplateClassLoader(template.getClassLoader(), name, templateBytes(template));
+            try
+            {
+                specialised = loader.loadClass(name);
+            }
+            catch (final ClassNotFoundException e)
+            {
+                throw new IllegalStateException(e);
+            }
+
+            final Class<?> existing = byTranslator.putIfAbsent(translatorClass, specialised);
+            if (null != existing)
+            {
+                specialised = existing;
+            }
+        }
+
+        return specialised;
+    }
+
+    private static byte[] templateBytes(final Class<?> template) throws IOException
+    {
+        final String name = template.getName();
+        byte[] bytes = TEMPLATE_BYTES.get(name);
+        if (null == bytes)
+        {
+            final InputStream in = template.getResourceAsStream('/' + name.replace('.', '/') + ".class");
+            if (null == in)
+            {
+                throw new IOException("Class file of " + name + " not found");
+            }
+
+            try
+            {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] chunk = new byte[4096];
+                int read;
+                while (-1 != (read = in.read(chunk)))
+                {
+                    out.write(chunk, 0, read);
+                }
+                bytes = out.toByteArray();
+            }
+            finally
+            {
+                in.close();
+            }
+
+            TEMPLATE_BYTES.putIfAbsent(name, bytes);
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Defines a fresh copy of one template class and delegates everything else to the parent.
+     */
+    private static final class TemplateClassLoader extends ClassLoader
+    {
+        private final String templateName;
+        private final byte[] templateBytes;
+
+        TemplateClassLoader(final ClassLoader parent, final String templateName, final byte[] templateBytes)
+        {
+            super(parent);
+            this.templateName = templateName;
+            this.templateBytes = templateBytes;
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException
+        {
+            if (!templateName.equals(name))
+            {
+                return super.loadClass(name, resolve);
+            }
+
+            Class<?> loaded = findLoadedClass(name);
+            if (null == loaded)
+            {
+                loaded = defineClass(name, templateBytes, 0, templateBytes.length);
+            }
+            if (resolve)
+            {
+                resolveClass(loaded);
+            }
+
+            return loaded;
+        }
+    }
+
+    // The templates below are copied into a new class loader per translator class, so they may only use public
+    // types and members.
+
+    /**
+     * Template for {@link Publisher}, only public so that copies can be instantiated.
+     */
+    public static final class Template<E> implements Publisher<E>
+    {
+        private final RingBuffer<E> ringBuffer;
+        private final EventTranslator<E> translator;
+
+        public Template(final RingBuffer<E> ringBuffer, final EventTranslator<E> translator)
+        {
+            this.ringBuffer = ringBuffer;
+            this.translator = translator;
+        }
+
+        @Override
+        public void publish()
+        {
+            final long sequence = ringBuffer.next();
+            try
+            {
+                translator.translateTo(ringBuffer.get(sequence), sequence);
+            }
+            finally
+            {
+                ringBuffer.publish(sequence);
+            }
+        }
+
+        @Override
+        public boolean tryPublish()
+        {
+            final long sequence;
+            try
+            {
+                sequence = ringBuffer.tryNext();
+            }
+            catch (final InsufficientCapacityException e)
+            {
+                return false;
+            }
+
+            try
+            {
+                translator.translateTo(ringBuffer.get(sequence), sequence);
+            }
+            finally
+            {
+                ringBuffer.publish(sequence);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Template for {@link OneArgPublisher}, only public so that copies can be instantiated.
+     */
+    public static final class OneArgTemplate<E, A> implements OneArgPublisher<E, A>
+    {
+        private final RingBuffer<E> ringBuffer;
+        private final EventTranslatorOneArg<E, A> translator;
+
+        public OneArgTemplate(final RingBuffer<E> ringBuffer, final EventTranslatorOneArg<E, A> translator)
+        {
+            this.ringBuffer = ringBuffer;
+            this.translator = translator;
+        }
+
+        @Override
+        public void publish(final A arg0)
+        {
+            final long sequence = ringBuffer.next();
+            try
+            {
+                translator.translateTo(ringBuffer.get(sequence), sequence, arg0);
+            }
+            finally
+            {
+                ringBuffer.publish(sequence);
+            }
+        }
+
+        @Override
+        public boolean tryPublish(final A arg0)
+        {
+            final long sequence;
+            try
+            {
+                sequence = ringBuffer.tryNext();
+            }
+            catch (final InsufficientCapacityException e)
+            {
+                return false;
+            }
+
+            try
+            {
+                translator.translateTo(ringBuffer.get(sequence), sequence, arg0);
+            }
+            finally
+            {
+                ringBuffer.publish(sequence);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Template for {@link TwoArgPublisher}, only public so that copies can be instantiated.
+     */
+    public static final class TwoArgTemplate<E, A, B> implements TwoArgPublisher<E, A, B>
+    {
+        private final RingBuffer<E> ringBuffer;
+        private final EventTranslatorTwoArg<E, A, B> translator;
+
+        public TwoArgTemplate(final RingBuffer<E> ringBuffer, final EventTranslatorTwoArg<E, A, B> translator)
+        {
+            this.ringBuffer = ringBuffer;
+            this.translator = translator;
+        }
+
+        @Override
+        public void publish(final A arg0, final B arg1)
+        {
+            final long sequence = ringBuffer.next();
+            try
+            {
+                translator.translateTo(ringBuffer.get(sequence), sequence, arg0, arg1);
+            }
+            finally
+            {
+                ringBuffer.publish(sequence);
+            }
+        }
+
+        @Override
+        public boolean tryPublish(final A arg0, final B arg1)
+        {
+            final long sequence;
+            try
+            {
+                sequence = ringBuffer.tryNext();
+            }
+            catch (final InsufficientCapacityException e)
+            {
+                return false;
+            }
+
+            try
+            {
+                translator.translateTo(ringBuffer.get(sequence), sequence, arg0, arg1);
+            }
+            finally
+            {
+                ringBuffer.publish(sequence);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Template for {@link ThreeArgPublisher}, only public so that copies can be instantiated.
+     */
+    public static final class ThreeArgTemplate<E, A, B, C> implements ThreeArgPublisher<E, A, B, C>
+    {
+        private final RingBuffer<E> ringBuffer;
+        private final EventTranslatorThreeArg<E, A, B, C> translator;
+
+        public ThreeArgTemplate(final RingBuffer<E> ringBuffer, final EventTranslatorThreeArg<E, A, B, C> translator)
+        {
+            this.ringBuffer = ringBuffer;
+            this.translator = translator;
+        }
+
+        @Override
+        public void publish(final A arg0, final B arg1, final C arg2)
+        {
+            final long sequence = ringBuffer.next();
+            try
+            {
+                translator.translateTo(ringBuffer.get(sequence), sequence, arg0, arg1, arg2);
+            }
+            finally
+            {
+                ringBuffer.publish(sequence);
+            }
+        }
+
+        @Override
+        public boolean tryPublish(final A arg0, final B arg1, final C arg2)
+        {
+            final long sequence;
+            try
+            {
+                sequence = ringBuffer.tryNext();
+            }
+            catch (final InsufficientCapacityException e)
+            {
+                return false;
+            }
+
+            try
+            {
+                translator.translateTo(ringBuffer.get(sequence), sequence, arg0, arg1, arg2);
+            }
+            finally
+            {
+                ringBuffer.publish(sequence);
+            }
+            return true;
+        }
+    }
+}
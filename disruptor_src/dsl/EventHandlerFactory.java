@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.dsl;
+
+import com.lmax.disruptor.EventHandler;
+
+/**
+ * A factory interface to make it possible to give each shard of a {@link ShardedDisruptor} its own
+ * {@link EventHandler} instance.
+ *
+ * @param <T> the type of event used.
+ */
+public interface EventHandlerFactory<T>
+{
+    /**
+     * Create a new handler for one shard.  Each call must return a distinct instance as the handlers of
+     * different shards run on different threads.
+     *
+     * @param shard index of the shard the handler will process events for.
+     * @return a handler for the shard.
+     */
+    EventHandler<? super T> createEventHandler(int shard);
+}
@@ -192,4 +192,9 @@ public class EventHandlerGroup<T>
     {
         return disruptor.getRingBuffer().newBarrier(sequences);
     }
+
+    Sequence[] getSequences()
+    {
+        return sequences;
+    }
 }
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.dsl;
+
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventPoller;
+import com.lmax.disruptor.EventTranslator;
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.EventTranslatorThreeArg;
+import com.lmax.disruptor.EventTranslatorTwoArg;
+import com.lmax.disruptor.EventTranslatorVararg;
+import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.OrderedMergePoller;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.RingSelector;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.WaitStrategy;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A DSL-style API for running a number of independent {@link Disruptor}s (shards) as one.  Each shard has its
+ * own ring buffer, sequencer and event processors, so producers publishing to different shards never contend
+ * on a cursor.  Events are routed to a shard by key and ordering is only preserved between events with the
+ * same key.</p>
+ *
+ * <p>Handlers are created per shard through an {@link EventHandlerFactory}, and chained as with the
+ * {@link Disruptor}:</p>
+ *
+ * <pre>
+ * <code>ShardedDisruptor&lt;MyEvent&gt; disruptor = new ShardedDisruptor&lt;MyEvent&gt;(MyEvent.FACTORY, 1024, threadFactory,
+ *                                                               ProducerType.MULTI, waitStrategy, 4);
+ * disruptor.handleEventsWith(journallerFactory).then(businessLogicFactory);
+ * disruptor.start();
+ * disruptor.publishEvent(accountId, TRANSLATOR, order);</code>
+ * </pre>
+ *
+ * <p>All shards share the supplied {@link WaitStrategy} instance, which lets a merged view wait on every shard
+ * at once.  A locking wait strategy therefore has its lock taken by the producers of every shard; prefer a non
+ * locking strategy where producer throughput matters.</p>
+ * 由N个独立Disruptor组成的分片Disruptor, 生产者按key路由到分片, 各分片的游标互不竞争, 只保证同一key的事件有序.
+ *
+ * @param <T> the type of event used.
+ */
+public class ShardedDisruptor<T>
+{
+    private final Disruptor<T>[] shards;
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * Create a new ShardedDisruptor.
+     *
+     * @param eventFactory   the factory to create events in the ring buffers.
+     * @param ringBufferSize the size of each shard's ring buffer, must be power of 2.
+     * @param threadFactory  a {@link ThreadFactory} to create threads for processors.
+     * @param producerType   the claim strategy to use for each ring buffer.
+     * @param waitStrategy   the wait strategy shared by all ring buffers.
+     * @param shardCount     the number of shards.
+     */
+    public ShardedDisruptor(
+        final EventFactory<T> eventFactory,
+        final int ringBufferSize,
+        final ThreadFactory threadFactory,
+        final ProducerType producerType,
+        final WaitStrategy waitStrategy,
+        final int shardCount)
+    {
+        if (shardCount < 1)
+        {
+            throw new IllegalArgumentException("shardCount must be > 0");
+        }
+
+        this.waitStrategy = waitStrategy;
+        this.shards = newArray(shardCount);
+        for (int i = 0; i < shardCount; i++)
+        {
+            shards[i] = new Disruptor<T>(eventFactory, ringBufferSize, threadFactory, producerType, waitStrategy);
+        }
+    }
+
+    /**
+     * <p>Set up event handlers to handle events from every shard.  Each factory is called once per shard and
+     * the handlers created for a shard process events as soon as they are published to it, in parallel.</p>
+     *
+     * @param handlerFactories the factories of the handlers that will process events.
+     * @return a {@link ShardedEventHandlerGroup} that can be used to chain dependencies.
+     */
+    @SuppressWarnings({"unchecked", "varargs"})
+    public ShardedEventHandlerGroup<T> handleEventsWith(final EventHandlerFactory<T>... handlerFactories)
+    {
+        final EventHandlerGroup<T>[] groups = ShardedEventHandlerGroup.newArray(shards.length);
+        for (int i = 0; i < shards.length; i++)
+        {
+            groups[i] = shards[i].handleEventsWith(createEventHandlers(handlerFactories, i));
+        }
+
+        return new ShardedEventHandlerGroup<T>(this, groups);
+    }
+
+    /**
+     * Specify an exception handler to be used for event handlers and worker pools created on every shard.
+     *
+     * @param exceptionHandler the exception handler to use.
+     * @see Disruptor#setDefaultExceptionHandler(ExceptionHandler)
+     */
+    public void setDefaultExceptionHandler(final ExceptionHandler<? super T> exceptionHandler)
+    {
+        for (final Disruptor<T> shard : shards)
+        {
+            shard.setDefaultExceptionHandler(exceptionHandler);
+        }
+    }
+
+    /**
+     * Create a single threaded view over all shards.  The returned selector delivers the events of every shard
+     * to <code>handler</code> as soon as they are published, taking at most <code>batchSize</code> events
+     * from one shard before moving on to the next.  Events are in order per shard but interleaved across
+     * shards.  The view gates the producers of every shard, so it must be polled.
+     *
+     * @param batchSize maximum number of events handled from one shard in a pass.
+     * @param handler   to receive the events.
+     * @return a selector to be polled by a single consumer thread.
+     */
+    public RingSelector createMergedView(final int batchSize, final EventPoller.Handler<? super T> handler)
+    {
+        return createMergedView(null, batchSize, handler);
+    }
+
+    RingSelector createMergedView(
+        final ShardedEventHandlerGroup<T> after, final int batchSize, final EventPoller.Handler<? super T> handler)
+    {
+        final RingSelector selector = new RingSelector(waitStrategy, batchSize);
+        for (int i = 0; i < shards.length; i++)
+        {
+            final RingBuffer<T> ringBuffer = shards[i].getRingBuffer();
+            final Sequence[] dependentSequences =
+                null == after ? new Sequence[0] : after.getShard(i).getSequences();
+            final EventPoller<T> poller = ringBuffer.newPoller(dependentSequences);
+            ringBuffer.addGatingSequences(poller.getSequence());
+            selector.register(poller, ringBuffer, handler);
+        }
+
+        return selector;
+    }
+
+    /**
+     * Create a single threaded view over all shards that emits events in the order of <code>eventKey</code>, on
+     * the assumption that events are published to each shard in that order.  The merge gates the producers of
+     * every shard, so it must be polled.
+     *
+     * @param eventKey extracts the key events are merged by.
+     * @return a merge to be polled by a single consumer thread, source <code>i</code> is shard <code>i</code>.
+     * @see OrderedMergePoller
+     */
+    public OrderedMergePoller<T> createOrderedMerge(final OrderedMergePoller.EventKey<? super T> eventKey)
+    {
+        return createOrderedMerge(null, eventKey);
+    }
+
+    OrderedMergePoller<T> createOrderedMerge(
+        final ShardedEventHandlerGroup<T> after, final OrderedMergePoller.EventKey<? super T> eventKey)
+    {
+        final OrderedMergePoller<T> merge = new OrderedMergePoller<T>(eventKey);
+        for (int i = 0; i < shards.length; i++)
+        {
+            final Sequence[] dependentSequences =
+                null == after ? new Sequence[0] : after.getShard(i).getSequences();
+            merge.addSource(shards[i].getRingBuffer(), dependentSequences);
+        }
+
+        return merge;
+    }
+
+    /**
+     * Get the shard events with the given key are routed to.
+     *
+     * @param key the routing key.
+     * @return the index of the shard.
+     */
+    public int shardFor(final long key)
+    {
+        // murmur3 finaliser, so that sequential keys are spread over the shards
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        return (int) ((h >>> 1) % shards.length);
+    }
+
+    /**
+     * Get the shard events with the given key are routed to.
+     *
+     * @param key the routing key, routed by its hash code.
+     * @return the index of the shard.
+     */
+    public int shardFor(final Object key)
+    {
+        return shardFor(key.hashCode());
+    }
+
+    /**
+     * Publish an event to the shard owning <code>key</code>.
+     *
+     * @param key             the routing key.
+     * @param eventTranslator the translator that will load data into the event.
+     */
+    public void publishEvent(final long key, final EventTranslator<T> eventTranslator)
+    {
+        shards[shardFor(key)].getRingBuffer().publishEvent(eventTranslator);
+    }
+
+    /**
+     * Publish an event to the shard owning <code>key</code>.
+     *
+     * @param key             the routing key.
+     * @param eventTranslator the translator that will load data into the event.
+     * @param arg             A single argument to load into the event
+     */
+    @SuppressWarnings("overloads")
+    public <A> void publishEvent(final long key, final EventTranslatorOneArg<T, A> eventTranslator, final A arg)
+    {
+        shards[shardFor(key)].getRingBuffer().publishEvent(eventTranslator, arg);
+    }
+
+    /**
+     * Publish an event to the shard owning <code>key</code>.
+     *
+     * @param key             the routing key.
+     * @param eventTranslator the translator that will load data into the event.
+     * @param arg0            The first argument to load into the event
+     * @param arg1            The second argument to load into the event
+     */
+    public <A, B> void publishEvent(
+        final long key, final EventTranslatorTwoArg<T, A, B> eventTranslator, final A arg0, final B arg1)
+    {
+        shards[shardFor(key)].getRingBuffer().publishEvent(eventTranslator, arg0, arg1);
+    }
+
+    /**
+     * Publish an event to the shard owning <code>key</code>.
+     *
+     * @param key             the routing key.
+     * @param eventTranslator the translator that will load data into the event.
+     * @param arg0            The first argument to load into the event
+     * @param arg1            The second argument to load into the event
+     * @param arg2            The third argument to load into the event
+     */
+    public <A, B, C> void publishEvent(
+        final long key,
+        final EventTranslatorThreeArg<T, A, B, C> eventTranslator,
+        final A arg0,
+        final B arg1,
+        final C arg2)
+    {
+        shards[shardFor(key)].getRingBuffer().publishEvent(eventTranslator, arg0, arg1, arg2);
+    }
+
+    /**
+     * Publish an event to the shard owning <code>key</code>.
+     *
+     * @param key             the routing key.
+     * @param eventTranslator the translator that will load data into the event.
+     * @param args            The arguments to load into the event
+     */
+    @SuppressWarnings("overloads")
+    public void publishEvent(final long key, final EventTranslatorVararg<T> eventTranslator, final Object... args)
+    {
+        shards[shardFor(key)].getRingBuffer().publishEvent(eventTranslator, args);
+    }
+
+    /**
+     * Starts the event processors of every shard.  This method must only be called once after all event
+     * processors have been added.
+     *
+     * @see Disruptor#start()
+     */
+    public void start()
+    {
+        for (final Disruptor<T> shard : shards)
+        {
+            shard.start();
+        }
+    }
+
+    /**
+     * Calls {@link com.lmax.disruptor.EventProcessor#halt()} on all of the event processors of every shard.
+     */
+    public void halt()
+    {
+        for (final Disruptor<T> shard : shards)
+        {
+            shard.halt();
+        }
+    }
+
+    /**
+     * Waits until all events currently in every shard have been processed and then halts the processors.
+     *
+     * @see Disruptor#shutdown()
+     */
+    public void shutdown()
+    {
+        for (final Disruptor<T> shard : shards)
+        {
+            shard.shutdown();
+        }
+    }
+
+    /**
+     * Waits until all events currently in every shard have been processed and then halts the processors.
+     *
+     * @param timeout  the amount of time to wait for all events to be processed. <code>-1</code> will give an infinite timeout
+     * @param timeUnit the unit the timeOut is specified in
+     * @see Disruptor#shutdown(long, TimeUnit)
+     */
+    public void shutdown(final long timeout, final TimeUnit timeUnit) throws TimeoutException
+    {
+        final long timeOutAt = System.currentTimeMillis() + timeUnit.toMillis(timeout);
+        for (final Disruptor<T> shard : shards)
+        {
+            if (timeout < 0)
+            {
+                shard.shutdown(-1, TimeUnit.MILLISECONDS);
+            }
+            else
+            {
+                shard.shutdown(Math.max(0, timeOutAt - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * @return the number of shards.
+     */
+    public int getShardCount()
+    {
+        return shards.length;
+    }
+
+    /**
+     * Get the {@link Disruptor} of a single shard, e.g. to configure exception handling for one handler.
+     *
+     * @param shard index of the shard.
+     * @return the shard's disruptor.
+     */
+    public Disruptor<T> getShard(final int shard)
+    {
+        return shards[shard];
+    }
+
+    /**
+     * Get the {@link RingBuffer} of a single shard.
+     *
+     * @param shard index of the shard.
+     * @return the shard's ring buffer.
+     */
+    public RingBuffer<T> getRingBuffer(final int shard)
+    {
+        return shards[shard].getRingBuffer();
+    }
+
+    static <T> EventHandler<? super T>[] createEventHandlers(
+        final EventHandlerFactory<T>[] handlerFactories, final int shard)
+    {
+        @SuppressWarnings("unchecked")
+        final EventHandler<? super T>[] handlers =
+            (EventHandler<? super T>[]) new EventHandler<?>[handlerFactories.length];
+        for (int i = 0; i < handlerFactories.length; i++)
+        {
+            handlers[i] = handlerFactories[i].createEventHandler(shard);
+        }
+
+        return handlers;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Disruptor<T>[] newArray(final int length)
+    {
+        return (Disruptor<T>[]) new Disruptor<?>[length];
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.dsl;
+
+import com.lmax.disruptor.EventPoller;
+import com.lmax.disruptor.OrderedMergePoller;
+import com.lmax.disruptor.RingSelector;
+
+/**
+ * A group of event processors repeated on every shard of a {@link ShardedDisruptor}, holding one
+ * {@link EventHandlerGroup} per shard.
+ *
+ * @param <T> the type of entry used by the event processors.
+ */
+public class ShardedEventHandlerGroup<T>
+{
+    private final ShardedDisruptor<T> disruptor;
+    private final EventHandlerGroup<T>[] groups;
+
+    ShardedEventHandlerGroup(final ShardedDisruptor<T> disruptor, final EventHandlerGroup<T>[] groups)
+    {
+        this.disruptor = disruptor;
+        this.groups = groups;
+    }
+
+    /**
+     * Create a new group that combines the handlers in this group with <tt>otherHandlerGroup</tt>, shard by shard.
+     *
+     * @param otherHandlerGroup the group to combine.
+     * @return a new group combining the existing and new handlers into a single dependency group.
+     */
+    public ShardedEventHandlerGroup<T> and(final ShardedEventHandlerGroup<T> otherHandlerGroup)
+    {
+        final EventHandlerGroup<T>[] combined = newArray(groups.length);
+        for (int i = 0; i < groups.length; i++)
+        {
+            combined[i] = groups[i].and(otherHandlerGroup.groups[i]);
+        }
+
+        return new ShardedEventHandlerGroup<T>(disruptor, combined);
+    }
+
+    /**
+     * Set up event handlers on every shard that only process an event after every handler of this group on the
+     * same shard has processed it.
+     *
+     * @param handlerFactories the factories of the handlers that will process events.
+     * @return a {@link ShardedEventHandlerGroup} that can be used to chain dependencies.
+     * @see EventHandlerGroup#then(com.lmax.disruptor.EventHandler[])
+     */
+    @SuppressWarnings({"unchecked", "varargs"})
+    public ShardedEventHandlerGroup<T> then(final EventHandlerFactory<T>... handlerFactories)
+    {
+        return handleEventsWith(handlerFactories);
+    }
+
+    /**
+     * Set up event handlers on every shard that only process an event after every handler of this group on the
+     * same shard has processed it.
+     *
+     * @param handlerFactories the factories of the handlers that will process events.
+     * @return a {@link ShardedEventHandlerGroup} that can be used to chain dependencies.
+     * @see EventHandlerGroup#handleEventsWith(com.lmax.disruptor.EventHandler[])
+     */
+    @SuppressWarnings({"unchecked", "varargs"})
+    public ShardedEventHandlerGroup<T> handleEventsWith(final EventHandlerFactory<T>... handlerFactories)
+    {
+        final EventHandlerGroup<T>[] next = newArray(groups.length);
+        for (int i = 0; i < groups.length; i++)
+        {
+            next[i] = groups[i].handleEventsWith(ShardedDisruptor.createEventHandlers(handlerFactories, i));
+        }
+
+        return new ShardedEventHandlerGroup<T>(disruptor, next);
+    }
+
+    /**
+     * Create a single threaded view over all shards that only sees an event once every handler of this group
+     * has processed it.
+     *
+     * @param batchSize maximum number of events handled from one shard in a pass.
+     * @param handler   to receive the events.
+     * @return a selector to be polled by a single consumer thread.
+     * @see ShardedDisruptor#createMergedView(int, EventPoller.Handler)
+     */
+    public RingSelector thenMergedView(final int batchSize, final EventPoller.Handler<? super T> handler)
+    {
+        return disruptor.createMergedView(this, batchSize, handler);
+    }
+
+    /**
+     * Create a single threaded, key ordered view over all shards that only sees an event once every handler of
+     * this group has processed it.
+     *
+     * @param eventKey extracts the key events are merged by.
+     * @return a merge to be polled by a single consumer thread.
+     * @see ShardedDisruptor#createOrderedMerge(OrderedMergePoller.EventKey)
+     */
+    public OrderedMergePoller<T> thenOrderedMerge(final OrderedMergePoller.EventKey<? super T> eventKey)
+    {
+        return disruptor.createOrderedMerge(this, eventKey);
+    }
+
+    /**
+     * Get the handlers of this group on a single shard.
+     *
+     * @param shard index of the shard.
+     * @return the group of handlers on that shard.
+     */
+    public EventHandlerGroup<T> getShard(final int shard)
+    {
+        return groups[shard];
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> EventHandlerGroup<T>[] newArray(final int length)
+    {
+        return (EventHandlerGroup<T>[]) new EventHandlerGroup<?>[length];
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.flow;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.lmax.disruptor.EventPoller;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+
+/**
+ * <p>{@link Flow.Publisher} that delivers the events of a {@link RingBuffer} to its subscribers.  Each
+ * subscriber gets its own {@link EventPoller} whose sequence is added as a gating sequence, so a subscriber
+ * that signals no demand holds back the ring buffer's producers.</p>
+ *
+ * <p>Delivery happens on the thread calling {@link #poll()}, which should be a single consumer thread.  The
+ * event passed to {@link Flow.Subscriber#onNext(Object)} is the ring buffer's preallocated instance and is
+ * only valid for the duration of the call.</p>
+ * 基于EventPoller的Publisher, 每个订阅者拥有独立的门控序号, 其request(n)直接推进自己的Sequence.
+ *
+ * @param <E> event type stored in the ring buffer.
+ */
+public final class EventPollerPublisher<E> implements Flow.Publisher<E>
+{
+    private final RingBuffer<E> ringBuffer;
+    private final Sequence[] dependentSequences;
+    private volatile PollerSubscription<E>[] subscriptions = newArray(0);
+
+    /**
+     * @param ringBuffer         to deliver events from.
+     * @param dependentSequences sequences of upstream consumers that must process an event before it is
+     *                           delivered, empty to deliver as soon as the event is published.
+     */
+    public EventPollerPublisher(final RingBuffer<E> ringBuffer, final Sequence... dependentSequences)
+    {
+        this.ringBuffer = ringBuffer;
+        this.dependentSequences = dependentSequences;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super E> subscriber)
+    {
+        final EventPoller<E> poller = ringBuffer.newPoller(dependentSequences);
+        final PollerSubscription<E> subscription = new PollerSubscription<E>(this, poller, subscriber);
+
+        ringBuffer.addGatingSequences(poller.getSequence());
+        synchronized (this)
+        {
+            final PollerSubscription<E>[] current = subscriptions;
+            final PollerSubscription<E>[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = subscription;
+            subscriptions = updated;
+        }
+
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * Deliver available events to every subscriber with outstanding demand.
+     *
+     * @return true if any events were delivered.
+     * @throws Exception if the underlying poll fails.
+     */
+    public boolean poll() throws Exception
+    {
+        boolean processed = false;
+        final PollerSubscription<E>[] subscriptions = this.subscriptions;
+        for (int i = 0, n = subscriptions.length; i < n; i++)
+        {
+            final PollerSubscription<E> subscription = subscriptions[i];
+            if (subscription.demand.get() > 0 &&
+                EventPoller.PollState.PROCESSING == subscription.poller.poll(subscription))
+            {
+                processed = true;
+            }
+        }
+
+        return processed;
+    }
+
+    /**
+     * Signal completion to every subscriber and release their gating sequences.
+     */
+    public void complete()
+    {
+        final PollerSubscription<E>[] subscriptions = this.subscriptions;
+        for (final PollerSubscription<E> subscription : subscriptions)
+        {
+            if (remove(subscription))
+            {
+                subscription.subscriber.onComplete();
+            }
+        }
+    }
+
+    /**
+     * @return the number of active subscriptions.
+     */
+    public int getSubscriberCount()
+    {
+        return subscriptions.length;
+    }
+
+    private boolean remove(final PollerSubscription<E> subscription)
+    {
+        synchronized (this)
+        {
+            final PollerSubscription<E>[] current = subscriptions;
+            int index = -1;
+            for (int i = 0; i < current.length; i++)
+            {
+                if (current[i] == subscription)
+                {
+                    index = i;
+                    break;
+                }
+            }
+
+            if (-1 == index)
+            {
+                return false;
+            }
+
+            final PollerSubscription<E>[] updated = newArray(current.length - 1);
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            subscriptions = updated;
+        }
+
+        ringBuffer.removeGatingSequence(subscription.poller.getSequence());
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> PollerSubscription<E>[] newArray(final int length)
+    {
+        return (PollerSubscription<E>[]) new PollerSubscription<?>[length];
+    }
+
+    private static final class PollerSubscription<E> implements Flow.Subscription, EventPoller.Handler<E>
+    {
+        private final EventPollerPublisher<E> publisher;
+        private final EventPoller<E> poller;
+        private final Flow.Subscriber<? super E> subscriber;
+        private final AtomicLong demand = new AtomicLong(0);
+
+        PollerSubscription(
+            final EventPollerPublisher<E> publisher,
+            final EventPoller<E> poller,
+            final Flow.Subscriber<? super E> subscriber)
+        {
+            this.publisher = publisher;
+            this.poller = poller;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n)
+        {
+            if (n <= 0)
+            {
+                if (publisher.remove(this))
+                {
+                    subscriber.onError(new IllegalArgumentException("non-positive subscription request: " + n));
+                }
+                return;
+            }
+
+            long current;
+            long updated;
+            do
+            {
+                current = demand.get();
+                updated = current + n;
+                if (updated < 0)
+                {
+                    updated = Long.MAX_VALUE;
+                }
+            }
+            while (!demand.compareAndSet(current, updated));
+        }
+
+        @Override
+        public void cancel()
+        {
+            publisher.remove(this);
+        }
+
+        @Override
+        public boolean onEvent(final E event, final long sequence, final boolean endOfBatch)
+        {
+            try
+            {
+                subscriber.onNext(event);
+            }
+            catch (final Throwable ex)
+            {
+                // a subscriber that throws is treated as cancelled
+                publisher.remove(this);
+                return false;
+            }
+
+            return demand.decrementAndGet() > 0;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.flow;
+
+/**
+ * <p>Demand based publish/subscribe contracts used by the ring buffer bridges in this package.</p>
+ *
+ * <p>The interfaces mirror <code>java.util.concurrent.Flow</code> (and the Reactive Streams API) method
+ * for method so that the Disruptor can remain on its current Java baseline.  Adapting to the JDK types
+ * is a one line delegation per method.</p>
+ * 与java.util.concurrent.Flow一一对应的接口定义, 使Disruptor不需要提升Java版本.
+ */
+public final class Flow
+{
+    private Flow()
+    {
+    }
+
+    /**
+     * A producer of items that are received by {@link Subscriber}s.
+     *
+     * @param <T> the published item type
+     */
+    public interface Publisher<T>
+    {
+        /**
+         * Adds the given subscriber.  The subscriber is first passed its {@link Subscription} via
+         * {@link Subscriber#onSubscribe(Subscription)}.
+         *
+         * @param subscriber the subscriber
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * A receiver of items.  Signals to a subscriber are never issued concurrently.
+     *
+     * @param <T> the subscribed item type
+     */
+    public interface Subscriber<T>
+    {
+        /**
+         * Invoked prior to any other signal for the given subscription.
+         *
+         * @param subscription a new subscription
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Invoked with the next item, only ever in response to outstanding demand.
+         *
+         * @param item the item
+         */
+        void onNext(T item);
+
+        /**
+         * Invoked upon an unrecoverable error, no further signals follow.
+         *
+         * @param throwable the exception
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Invoked when no further items will be issued.
+         */
+        void onComplete();
+    }
+
+    /**
+     * Link between a {@link Publisher} and a {@link Subscriber}.
+     */
+    public interface Subscription
+    {
+        /**
+         * Adds the given number of items to the current unfulfilled demand.
+         *
+         * @param n the increment of demand, must be positive.
+         */
+        void request(long n);
+
+        /**
+         * Stops the delivery of items, possibly not immediately.
+         */
+        void cancel();
+    }
+}
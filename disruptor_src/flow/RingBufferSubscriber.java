@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.flow;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+
+/**
+ * <p>{@link Flow.Subscriber} that feeds items into a {@link RingBuffer}.  Demand is only ever signalled for
+ * capacity the ring buffer has already reported as free, so upstream is held back rather than the
+ * subscribing thread being parked in {@link RingBuffer#next()}.</p>
+ *
+ * <p>Demand is requested in batches of up to <code>batchSize</code> and topped up once half of it has been
+ * consumed.  When the ring buffer is full no further demand is issued; the consuming side should call
+ * {@link #replenish()} once it has made progress (e.g. from an end of batch callback or an idle loop).</p>
+ *
+ * <p>If this subscriber is the only producer for the ring buffer {@link #onNext(Object)} never blocks.  With
+ * other producers present a claim may briefly wait for capacity taken by them.</p>
+ * 将上游的request(n)需求与RingBuffer的剩余容量绑定, 实现端到端的背压.
+ *
+ * @param <E> event type stored in the ring buffer.
+ * @param <T> item type received from upstream.
+ */
+public final class RingBufferSubscriber<E, T> implements Flow.Subscriber<T>
+{
+    private final RingBuffer<E> ringBuffer;
+    private final EventTranslatorOneArg<E, T> translator;
+    private final int batchSize;
+    private final AtomicLong outstanding = new AtomicLong(0);
+    private volatile Flow.Subscription subscription;
+    private volatile boolean done = false;
+    private volatile Throwable error;
+
+    /**
+     * @param ringBuffer to publish received items to.
+     * @param translator copies each item into its claimed event.
+     * @param batchSize  maximum demand outstanding at any one time, must not exceed the ring buffer size.
+     */
+    public RingBufferSubscriber(
+        final RingBuffer<E> ringBuffer, final EventTranslatorOneArg<E, T> translator, final int batchSize)
+    {
+        if (batchSize < 1 || batchSize > ringBuffer.getBufferSize())
+        {
+            throw new IllegalArgumentException("batchSize must be between 1 and the ring buffer size");
+        }
+
+        this.ringBuffer = ringBuffer;
+        this.translator = translator;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription)
+    {
+        if (null != this.subscription)
+        {
+            subscription.cancel();
+            return;
+        }
+
+        this.subscription = subscription;
+        replenish();
+    }
+
+    @Override
+    public void onNext(final T item)
+    {
+        long sequence;
+        try
+        {
+            sequence = ringBuffer.tryNext();
+        }
+        catch (final InsufficientCapacityException e)
+        {
+            // capacity reserved for this demand was taken by another producer
+            sequence = ringBuffer.next();
+        }
+
+        try
+        {
+            translator.translateTo(ringBuffer.get(sequence), sequence, item);
+        }
+        finally
+        {
+            ringBuffer.publish(sequence);
+        }
+
+        if (outstanding.decrementAndGet() <= batchSize >> 1)
+        {
+            replenish();
+        }
+    }
+
+    @Override
+    public void onError(final Throwable throwable)
+    {
+        error = throwable;
+        done = true;
+    }
+
+    @Override
+    public void onComplete()
+    {
+        done = true;
+    }
+
+    /**
+     * Signal further demand upstream, bounded by the free capacity of the ring buffer.
+     *
+     * @return the amount of demand requested by this call.
+     */
+    public synchronized long replenish()
+    {
+        final Flow.Subscription subscription = this.subscription;
+        if (null == subscription || done)
+        {
+            return 0;
+        }
+
+        final long current = outstanding.get();
+        final long free = ringBuffer.remainingCapacity() - current;
+        final long n = Math.min(batchSize - current, free);
+        if (n > 0)
+        {
+            outstanding.addAndGet(n);
+            subscription.request(n);
+            return n;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Cancel the upstream subscription.
+     */
+    public void cancel()
+    {
+        done = true;
+        final Flow.Subscription subscription = this.subscription;
+        if (null != subscription)
+        {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * @return true once upstream has completed, failed or the subscription was cancelled.
+     */
+    public boolean isDone()
+    {
+        return done;
+    }
+
+    /**
+     * @return the error upstream terminated with, null if none.
+     */
+    public Throwable getError()
+    {
+        return error;
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.io;
+
+/**
+ * Converts events to and from bytes, for journalling, IPC and network stages.  A codec for events of a fixed
+ * size can also be used to lay events out in the slots of a
+ * {@link com.lmax.disruptor.SharedMemorySequencer shared memory} ring buffer.
+ *
+ * @param <T> the type of event used.
+ */
+public interface EventCodec<T> extends EventEncoder<T>, EventDecoder<T>
+{
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads events from a {@link ByteBuffer} into preallocated event instances, used by the I/O stages in this
+ * package.  Implementations should not allocate, so that decoding into the events of a ring buffer produces no
+ * garbage.
+ *
+ * @param <T> the type of event used.
+ */
+public interface EventDecoder<T>
+{
+    /**
+     * Decode one encoded event.  The encoded bytes run from the buffer's position to its limit.
+     *
+     * <p>If the bytes cannot be decoded, the implementation must reset the event, or mark it invalid in a way its
+     * consumers check, before throwing: a stage decoding into a ring buffer still publishes the event, as its
+     * sequence cannot be returned.</p>
+     *
+     * @param buffer holding the encoded event.
+     * @param event  to decode into, overwriting any previous contents.
+     * @throws RuntimeException if the bytes cannot be decoded, after resetting or invalidating the event.
+     */
+    void decode(ByteBuffer buffer, T event);
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes events to a {@link ByteBuffer}, used by the I/O stages in this package.  Implementations should not
+ * allocate, so that encoding the preallocated events of a ring buffer produces no garbage.
+ *
+ * @param <T> the type of event used.
+ */
+public interface EventEncoder<T>
+{
+    /**
+     * @param event to be encoded.
+     * @return the exact number of bytes {@link #encode(Object, ByteBuffer)} will write for the event.
+     */
+    int encodedLength(T event);
+
+    /**
+     * Encode an event at the buffer's position, advancing the position by {@link #encodedLength(Object)} bytes.
+     * The buffer is guaranteed to have at least that many bytes remaining.
+     *
+     * @param event  to be encoded.
+     * @param buffer to encode into.
+     */
+    void encode(T event, ByteBuffer buffer);
+}
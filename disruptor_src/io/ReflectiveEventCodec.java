@@ -0,0 +1,250 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.io;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import sun.misc.Unsafe;
+
+import com.lmax.disruptor.util.Util;
+
+/**
+ * <p>{@link EventCodec} for simple events made only of primitive fields.  The fields, including those of super
+ * classes, are found by reflection once, when the codec is created, and are then read and written through their
+ * field offsets, so encoding and decoding neither box nor allocate.</p>
+ *
+ * <p>Events are encoded in a fixed layout: every non static, non transient field in the order of its name, each
+ * taking the size of its primitive type, in the byte order of the buffer.  The layout is independent of the JVM, so
+ * processes sharing a ring buffer or a socket agree on it as long as they use the same event class.</p>
+ * 通过反射一次性获取字段偏移量, 之后用Unsafe直接读写字段, 按固定布局编解码, 不装箱也不分配内存.
+ *
+ * @param <T> the type of event used.
+ */
+public final class ReflectiveEventCodec<T> implements EventCodec<T>
+{
+    private static final Unsafe UNSAFE = Util.getUnsafe();
+
+    private static final int LONG = 0;
+    private static final int INT = 1;
+    private static final int DOUBLE = 2;
+    private static final int FLOAT = 3;
+    private static final int SHORT = 4;
+    private static final int CHAR = 5;
+    private static final int BYTE = 6;
+    private static final int BOOLEAN = 7;
+    private static final Class<?>[] TYPES =
+        {long.class, int.class, double.class, float.class, short.class, char.class, byte.class, boolean.class};
+    private static final int[] SIZES = {8, 4, 8, 4, 2, 2, 1, 1};
+
+    private final long[] offsets;
+    private final int[] kinds;
+    private final int encodedLength;
+
+    /**
+     * @param eventClass the class of the events to encode.
+     * @throws IllegalArgumentException if the class has a field that is not primitive, static or transient.
+     */
+    public ReflectiveEventCodec(final Class<T> eventClass)
+    {
+        final List<Field> fields = new ArrayList<Field>();
+        for (Class<?> type = eventClass; null != type && Object.class != type; type = type.getSuperclass())
+        {
+            for (final Field field : type.getDeclaredFields())
+            {
+                final int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers))
+                {
+                    continue;
+                }
+                if (!field.getType().isPrimitive())
+                {
+                    throw new IllegalArgumentException(
+                        "Field " + field.getName() + " of " + eventClass.getName() + " is not a primitive");
+                }
+
+                fields.add(field);
+            }
+        }
+
+        Collections.sort(fields, new Comparator<Field>()
+        {
+            @Override
+            public int compare(final Field o1, final Field o2)
+            {
+                final int byName = o1.getName().compareTo(o2.getName());
+                return 0 != byName ? byName : o1.getDeclaringClass().getName().compareTo(o2.getDeclaringClass().getName());
+            }
+        });
+
+        offsets = new long[fields.size()];
+        kinds = new int[fields.size()];
+        int length = 0;
+        for (int i = 0; i < offsets.length; i++)
+        {
+            final Field field = fields.get(i);
+            offsets[i] = UNSAFE.objectFieldOffset(field);
+            kinds[i] = kindOf(field.getType());
+            length += SIZES[kinds[i]];
+        }
+        encodedLength = length;
+    }
+
+    private static int kindOf(final Class<?> type)
+    {
+        int kind = 0;
+        while (TYPES[kind] != type)
+        {
+            kind++;
+        }
+
+        return kind;
+    }
+
+    /**
+     * @return the size in bytes of every encoded event.
+     */
+    public int getEncodedLength()
+    {
+        return encodedLength;
+    }
+
+    @Override
+    public int encodedLength(final T event)
+    {
+        return encodedLength;
+    }
+
+    @Override
+    public void encode(final T event, final ByteBuffer buffer)
+    {
+        for (int i = 0; i < offsets.length; i++)
+        {
+            final long offset = offsets[i];
+            switch (kinds[i])
+            {
+                case LONG:
+                    buffer.putLong(UNSAFE.getLong(event, offset));
+                    break;
+                case INT:
+                    buffer.putInt(UNSAFE.getInt(event, offset));
+                    break;
+                case DOUBLE:
+                    buffer.putDouble(UNSAFE.getDouble(event, offset));
+                    break;
+                case FLOAT:
+                    buffer.putFloat(UNSAFE.getFloat(event, offset));
+                    break;
+                case SHORT:
+                    buffer.putShort(UNSAFE.getShort(event, offset));
+                    break;
+                case CHAR:
+                    buffer.putChar(UNSAFE.getChar(event, offset));
+                    break;
+                case BYTE:
+                    buffer.put(UNSAFE.getByte(event, offset));
+                    break;
+                case BOOLEAN:
+                    buffer.put(UNSAFE.getBoolean(event, offset) ? (byte) 1 : (byte) 0);
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void decode(final ByteBuffer buffer, final T event)
+    {
+        if (buffer.remaining() < encodedLength)
+        {
+            // reset rather than leave a partially decoded event, which will still be published
+            reset(event);
+            throw new BufferUnderflowException();
+        }
+
+        for (int i = 0; i < offsets.length; i++)
+        {
+            final long offset = offsets[i];
+            switch (kinds[i])
+            {
+                case LONG:
+                    UNSAFE.putLong(event, offset, buffer.getLong());
+                    break;
+                case INT:
+                    UNSAFE.putInt(event, offset, buffer.getInt());
+                    break;
+                case DOUBLE:
+                    UNSAFE.putDouble(event, offset, buffer.getDouble());
+                    break;
+                case FLOAT:
+                    UNSAFE.putFloat(event, offset, buffer.getFloat());
+                    break;
+                case SHORT:
+                    UNSAFE.putShort(event, offset, buffer.getShort());
+                    break;
+                case CHAR:
+                    UNSAFE.putChar(event, offset, buffer.getChar());
+                    break;
+                case BYTE:
+                    UNSAFE.putByte(event, offset, buffer.get());
+                    break;
+                case BOOLEAN:
+                    UNSAFE.putBoolean(event, offset, 0 != buffer.get());
+                    break;
+            }
+        }
+    }
+
+    private void reset(final T event)
+    {
+        for (int i = 0; i < offsets.length; i++)
+        {
+            final long offset = offsets[i];
+            switch (kinds[i])
+            {
+                case LONG:
+                    UNSAFE.putLong(event, offset, 0L);
+                    break;
+                case INT:
+                    UNSAFE.putInt(event, offset, 0);
+                    break;
+                case DOUBLE:
+                    UNSAFE.putDouble(event, offset, 0D);
+                    break;
+                case FLOAT:
+                    UNSAFE.putFloat(event, offset, 0F);
+                    break;
+                case SHORT:
+                    UNSAFE.putShort(event, offset, (short) 0);
+                    break;
+                case CHAR:
+                    UNSAFE.putChar(event, offset, (char) 0);
+                    break;
+                case BYTE:
+                    UNSAFE.putByte(event, offset, (byte) 0);
+                    break;
+                case BOOLEAN:
+                    UNSAFE.putBoolean(event, offset, false);
+                    break;
+            }
+        }
+    }
+}
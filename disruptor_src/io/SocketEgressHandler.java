@@ -0,0 +1,194 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceReportingEventHandler;
+
+/**
+ * <p>{@link com.lmax.disruptor.EventHandler} that writes events to a channel, typically a blocking
+ * {@link java.nio.channels.SocketChannel}.  Each event is encoded into a set of reusable direct buffers as a
+ * frame of a 4 byte big endian length followed by the encoded bytes, and the buffers are written with a single
+ * gathering write at the end of each batch, or once <code>flushThreshold</code> bytes are pending.  A batch of
+ * events therefore costs one system call rather than one per event.</p>
+ *
+ * <p>The handler's sequence is only reported once the bytes of an event have been written to the channel, so
+ * stages gated on this handler never run ahead of the network.  If a write fails the pending frames are
+ * discarded and the exception is passed to the processor's exception handler.  If encoding an event fails, its
+ * frame is removed from the buffers before the exception is rethrown, so the frames already pending and those
+ * that follow are still sent intact.</p>
+ * 将事件编码到可复用的直接内存缓冲区中, 在批次结束或达到阈值时用一次聚集写(gathering write)发送, 把Disruptor的自然批量
+ * 转化为系统调用的摊销. 只有在数据写入之后才上报自己的序号.
+ *
+ * @param <T> the type of event used.
+ */
+public final class SocketEgressHandler<T> implements SequenceReportingEventHandler<T>
+{
+    /**
+     * Size of the length prefix of each frame.
+     */
+    public static final int LENGTH_PREFIX = 4;
+
+    private final GatheringByteChannel channel;
+    private final EventEncoder<? super T> encoder;
+    private final ByteBuffer[] chunks;
+    private final int chunkSize;
+    private final int flushThreshold;
+    private int current = 0;
+    private int pendingBytes = 0;
+    private Sequence sequenceCallback;
+
+    /**
+     * @param channel        to write to, in blocking mode.
+     * @param encoder        to encode events.
+     * @param chunkSize      size of each direct buffer, the largest frame that can be sent.
+     * @param flushThreshold number of pending bytes after which the buffers are written without waiting for the
+     *                       end of the batch.
+     */
+    public SocketEgressHandler(
+        final GatheringByteChannel channel,
+        final EventEncoder<? super T> encoder,
+        final int chunkSize,
+        final int flushThreshold)
+    {
+        if (chunkSize <= LENGTH_PREFIX || flushThreshold < 1)
+        {
+            throw new IllegalArgumentException("chunkSize must be > " + LENGTH_PREFIX + " and flushThreshold > 0");
+        }
+
+        this.channel = channel;
+        this.encoder = encoder;
+        this.chunkSize = chunkSize;
+        this.flushThreshold = flushThreshold;
+        this.chunks = new ByteBuffer[(flushThreshold + chunkSize - 1) / chunkSize + 1];
+        for (int i = 0; i < chunks.length; i++)
+        {
+            chunks[i] = ByteBuffer.allocateDirect(chunkSize);
+        }
+    }
+
+    @Override
+    public void setSequenceCallback(final Sequence sequenceCallback)
+    {
+        this.sequenceCallback = sequenceCallback;
+    }
+
+    @Override
+    public void onEvent(final T event, final long sequence, final boolean endOfBatch) throws Exception
+    {
+        final int length = encoder.encodedLength(event);
+        final int frameLength = LENGTH_PREFIX + length;
+        if (frameLength > chunkSize)
+        {
+            throw new IllegalArgumentException("Encoded event of " + length + " bytes does not fit in a chunk");
+        }
+
+        ByteBuffer chunk = chunks[current];
+        if (chunk.remaining() < frameLength)
+        {
+            if (current + 1 == chunks.length)
+            {
+                flush();
+                report(sequence - 1);
+            }
+            else
+            {
+                current++;
+            }
+            chunk = chunks[current];
+        }
+
+        // a frame that fails to encode is dropped whole, a partial frame on the wire would desynchronise the peer
+        final int frameStart = chunk.position();
+        boolean encoded = false;
+        try
+        {
+            chunk.putInt(length);
+            final int start = chunk.position();
+            encoder.encode(event, chunk);
+            if (chunk.position() - start != length)
+            {
+                throw new IllegalStateException(
+                    "Encoder wrote " + (chunk.position() - start) + " bytes, expected " + length);
+            }
+            encoded = true;
+        }
+        finally
+        {
+            if (!encoded)
+            {
+                chunk.position(frameStart);
+            }
+        }
+
+        pendingBytes += frameLength;
+        if (endOfBatch || pendingBytes >= flushThreshold)
+        {
+            flush();
+            report(sequence);
+        }
+    }
+
+    /**
+     * Write all pending frames to the channel.
+     *
+     * @throws IOException if the write fails, the pending frames are discarded.
+     */
+    public void flush() throws IOException
+    {
+        if (0 == pendingBytes)
+        {
+            return;
+        }
+
+        final int count = current + 1;
+        try
+        {
+            for (int i = 0; i < count; i++)
+            {
+                chunks[i].flip();
+            }
+
+            // count bytes rather than test the last chunk, which is empty if encoding failed right after moving to it
+            long written = 0;
+            while (written < pendingBytes)
+            {
+                written += channel.write(chunks, 0, count);
+            }
+        }
+        finally
+        {
+            for (int i = 0; i < count; i++)
+            {
+                chunks[i].clear();
+            }
+            current = 0;
+            pendingBytes = 0;
+        }
+    }
+
+    private void report(final long sequence)
+    {
+        if (null != sequenceCallback)
+        {
+            sequenceCallback.set(sequence);
+        }
+    }
+}
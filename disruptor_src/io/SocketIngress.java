@@ -0,0 +1,178 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import com.lmax.disruptor.RingBuffer;
+
+/**
+ * <p>Reads frames written by {@link SocketEgressHandler}, a 4 byte big endian length followed by the encoded
+ * event, from a channel and decodes them directly into the preallocated events of a {@link RingBuffer}.</p>
+ *
+ * <p>Each {@link #read()} fills a direct buffer from the channel, claims one sequence per complete frame with a
+ * single {@link RingBuffer#next(int)}, decodes each frame into its event and publishes the whole range with one
+ * {@link RingBuffer#publish(long, long)}.  Nothing is allocated per message and the bytes are copied once, from
+ * the socket buffer into the event.  Partial frames are kept for the next read.</p>
+ *
+ * <p>An instance must only be used by one thread, e.g. the thread servicing a selector.  If the decoder throws,
+ * the event it was decoding into is still published, reset or marked invalid as required by
+ * {@link EventDecoder#decode(ByteBuffer, Object)}, as its sequence cannot be returned to the ring buffer.  The
+ * remaining complete frames are decoded and published before the first failure is rethrown.</p>
+ * 从通道读取到直接内存缓冲区中, 按帧切分后一次性申请next(n)个序号, 直接解码到预分配的事件中, 再用一次publish(lo, hi)发布.
+ *
+ * @param <T> the type of event used.
+ */
+public final class SocketIngress<T>
+{
+    private final ReadableByteChannel channel;
+    private final RingBuffer<T> ringBuffer;
+    private final EventDecoder<? super T> decoder;
+    private final ByteBuffer buffer;
+    private RuntimeException decodeFailure;
+
+    /**
+     * @param channel    to read from.
+     * @param ringBuffer to publish decoded events to.
+     * @param decoder    to decode events.
+     * @param bufferSize size of the direct read buffer, the largest frame that can be received.
+     */
+    public SocketIngress(
+        final ReadableByteChannel channel,
+        final RingBuffer<T> ringBuffer,
+        final EventDecoder<? super T> decoder,
+        final int bufferSize)
+    {
+        if (bufferSize <= SocketEgressHandler.LENGTH_PREFIX)
+        {
+            throw new IllegalArgumentException("bufferSize must be > " + SocketEgressHandler.LENGTH_PREFIX);
+        }
+
+        this.channel = channel;
+        this.ringBuffer = ringBuffer;
+        this.decoder = decoder;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Read once from the channel and publish every complete frame received so far.  With a blocking channel this
+     * blocks until some bytes arrive; with a non blocking channel call it when the channel is readable.  Blocks
+     * in {@link RingBuffer#next(int)} if the ring buffer is full.
+     *
+     * @return the number of events published, or -1 once the channel has reached end of stream.
+     * @throws IOException if the read fails or a frame is larger than the read buffer.
+     * @throws RuntimeException the first failure of the decoder, once every complete frame has been published.
+     */
+    public int read() throws IOException
+    {
+        final int read = channel.read(buffer);
+        if (read < 0)
+        {
+            return -1;
+        }
+
+        buffer.flip();
+        int published = 0;
+        try
+        {
+            int frames;
+            while (0 != (frames = countFrames()))
+            {
+                published += publish(Math.min(frames, ringBuffer.getBufferSize()));
+            }
+        }
+        finally
+        {
+            buffer.compact();
+        }
+
+        final RuntimeException failure = decodeFailure;
+        if (null != failure)
+        {
+            decodeFailure = null;
+            throw failure;
+        }
+
+        return published;
+    }
+
+    private int countFrames() throws IOException
+    {
+        int frames = 0;
+        int position = buffer.position();
+        final int limit = buffer.limit();
+        while (limit - position >= SocketEgressHandler.LENGTH_PREFIX)
+        {
+            final int length = buffer.getInt(position);
+            if (length < 0 || length > buffer.capacity() - SocketEgressHandler.LENGTH_PREFIX)
+            {
+                throw new IOException("Frame of " + length + " bytes does not fit the read buffer");
+            }
+
+            final int end = position + SocketEgressHandler.LENGTH_PREFIX + length;
+            if (end > limit)
+            {
+                break;
+            }
+
+            frames++;
+            position = end;
+        }
+
+        return frames;
+    }
+
+    private int publish(final int n)
+    {
+        final long hi = ringBuffer.next(n);
+        final long lo = hi - (n - 1);
+        final int limit = buffer.limit();
+        try
+        {
+            for (long sequence = lo; sequence <= hi; sequence++)
+            {
+                final int length = buffer.getInt();
+                final int end = buffer.position() + length;
+                buffer.limit(end);
+                try
+                {
+                    decoder.decode(buffer, ringBuffer.get(sequence));
+                }
+                catch (final RuntimeException e)
+                {
+                    // the decoder has reset the event, keep going so the frames after it are not held back
+                    if (null == decodeFailure)
+                    {
+                        decodeFailure = e;
+                    }
+                }
+                finally
+                {
+                    buffer.limit(limit);
+                    buffer.position(end);
+                }
+            }
+        }
+        finally
+        {
+            ringBuffer.publish(lo, hi);
+        }
+
+        return n;
+    }
+}
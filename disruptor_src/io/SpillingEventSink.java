@@ -0,0 +1,440 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.EventTranslator;
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.EventTranslatorTwoArg;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+
+/**
+ * <p>Publishes to a {@link RingBuffer} without waiting for capacity.  When the ring buffer is full, events are
+ * encoded and appended to a memory mapped spill file instead, and are moved back into the ring buffer, in order,
+ * as capacity returns.  Producers keep publishing at full rate through short consumer stalls, bounded by the size
+ * of the spill file rather than of the ring buffer.</p>
+ *
+ * <p>Once an event has been spilled every later event is spilled too, until the file has been drained, so
+ * consumers see events in the order they were published.  The file is drained at the start of every publication
+ * and by {@link #drain()}, which should be called periodically if producers may go quiet while events are
+ * spilled.  The file is used as a circular buffer, so only when it is full does publishing wait, for the ring buffer
+ * to take back enough of it to fit the next event.</p>
+ *
+ * <p>If the codec fails to decode a spilled event, that event is dropped and the exception is thrown to the
+ * caller, once the event it was publishing, if any, has been published or spilled.  Only the events decoded before
+ * the failure are published; the sequences claimed for the rest are kept and filled by the next events drained or
+ * published, so consumers never see a slot that was not written.</p>
+ *
+ * <p>The spill file is scratch space, it is not recovered after a restart.  Spilled events are translated with
+ * the sequence -1, as their sequence is not known until they are drained.  All methods
+ * are synchronized on the sink, which must be the only publisher to the ring buffer.</p>
+ * RingBuffer满时不阻塞生产者, 而是把事件编码后追加到内存映射的溢出文件中, 等容量恢复后再按顺序搬回RingBuffer.
+ * 一旦有事件溢出, 后续事件也都写入文件, 直到文件被清空, 以保证消费者看到的顺序与发布顺序一致. 溢出文件循环使用.
+ *
+ * @param <T> the type of event used.
+ */
+public final class SpillingEventSink<T> implements Closeable
+{
+    private static final int LENGTH_PREFIX = 4;
+    private static final int WRAP = -1;
+    private static final long NOT_CLAIMED = -1L;
+
+    private final RingBuffer<T> ringBuffer;
+    private final EventCodec<T> codec;
+    private final T scratch;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer readView;
+    private final ByteBuffer writeView;
+    private int readPosition = 0;
+    private int writePosition = 0;
+    private long spilledCount = 0;
+    private long claimedLo = 0;
+    private long claimedHi = -1;
+    private RuntimeException decodeFailure;
+    private long totalSpilledCount = 0;
+
+    /**
+     * @param ringBuffer    to publish to.
+     * @param eventFactory  creates the event spilled events are translated into before they are encoded.
+     * @param codec         encodes spilled events, and decodes them into the ring buffer.
+     * @param spillFile     file to map, created or truncated.
+     * @param spillCapacity size in bytes of the spill file.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public SpillingEventSink(
+        final RingBuffer<T> ringBuffer,
+        final EventFactory<T> eventFactory,
+        final EventCodec<T> codec,
+        final File spillFile,
+        final int spillCapacity) throws IOException
+    {
+        if (spillCapacity <= LENGTH_PREFIX)
+        {
+            throw new IllegalArgumentException("spillCapacity must be > " + LENGTH_PREFIX);
+        }
+
+        this.ringBuffer = ringBuffer;
+        this.codec = codec;
+        this.scratch = eventFactory.newInstance();
+        this.file = new RandomAccessFile(spillFile, "rw");
+        try
+        {
+            file.setLength(spillCapacity);
+            this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, spillCapacity);
+        }
+        catch (final IOException e)
+        {
+            file.close();
+            throw e;
+        }
+        this.readView = buffer.duplicate();
+        this.writeView = buffer.duplicate();
+    }
+
+    /**
+     * Publish an event, spilling it if the ring buffer is full.
+     *
+     * @param translator The user specified translation for the event
+     * @see com.lmax.disruptor.EventSink#publishEvent(EventTranslator)
+     */
+    public synchronized void publishEvent(final EventTranslator<T> translator)
+    {
+        final long sequence = tryClaim();
+        if (NOT_CLAIMED != sequence)
+        {
+            try
+            {
+                translator.translateTo(ringBuffer.get(sequence), sequence);
+            }
+            finally
+            {
+                ringBuffer.publish(sequence);
+            }
+        }
+        else
+        {
+            translator.translateTo(scratch, NOT_CLAIMED);
+            spill();
+        }
+
+        throwDecodeFailure();
+    }
+
+    /**
+     * Allows one user supplied argument.
+     *
+     * @param translator The user specified translation for the event
+     * @param arg0       A user supplied argument.
+     * @see #publishEvent(EventTranslator)
+     */
+    public synchronized <A> void publishEvent(final EventTranslatorOneArg<T, A> translator, final A arg0)
+    {
+        final long sequence = tryClaim();
+        if (NOT_CLAIMED != sequence)
+        {
+            try
+            {
+                translator.translateTo(ringBuffer.get(sequence), sequence, arg0);
+            }
+            finally
+            {
+                ringBuffer.publish(sequence);
+            }
+        }
+        else
+        {
+            translator.translateTo(scratch, NOT_CLAIMED, arg0);
+            spill();
+        }
+
+        throwDecodeFailure();
+    }
+
+    /**
+     * Allows two user supplied arguments.
+     *
+     * @param translator The user specified translation for the event
+     * @param arg0       A user supplied argument.
+     * @param arg1       A user supplied argument.
+     * @see #publishEvent(EventTranslator)
+     */
+    public synchronized <A, B> void publishEvent(
+        final EventTranslatorTwoArg<T, A, B> translator, final A arg0, final B arg1)
+    {
+        final long sequence = tryClaim();
+        if (NOT_CLAIMED != sequence)
+        {
+            try
+            {
+                translator.translateTo(ringBuffer.get(sequence), sequence, arg0, arg1);
+            }
+            finally
+            {
+                ringBuffer.publish(sequence);
+            }
+        }
+        else
+        {
+            translator.translateTo(scratch, NOT_CLAIMED, arg0, arg1);
+            spill();
+        }
+
+        throwDecodeFailure();
+    }
+
+    /**
+     * Move as many spilled events as the ring buffer has capacity for back into it, without waiting.
+     *
+     * @return the number of events still spilled.
+     * @throws RuntimeException thrown by the codec if a spilled event cannot be decoded, that event is dropped.
+     */
+    public synchronized long drain()
+    {
+        while (0 != spilledCount && claim(false))
+        {
+            decodeInto(claimedLo, Math.min(claimedHi, claimedLo + spilledCount - 1));
+        }
+
+        return spilledCount;
+    }
+
+    /**
+     * @return the number of events waiting in the spill file.
+     */
+    public synchronized long getSpilledCount()
+    {
+        return spilledCount;
+    }
+
+    /**
+     * @return the number of events that have been spilled since the sink was created.
+     */
+    public synchronized long getTotalSpilledCount()
+    {
+        return totalSpilledCount;
+    }
+
+    /**
+     * Close the spill file, any events still spilled are lost.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        file.close();
+    }
+
+    private long tryClaim()
+    {
+        if (0 != spilledCount)
+        {
+            try
+            {
+                drain();
+            }
+            catch (final RuntimeException e)
+            {
+                // thrown once the event being published has been handled, so that it is not lost
+                decodeFailure = e;
+            }
+
+            if (0 != spilledCount)
+            {
+                return NOT_CLAIMED;
+            }
+        }
+
+        if (claimedLo <= claimedHi)
+        {
+            return claimedLo++;
+        }
+
+        try
+        {
+            return ringBuffer.tryNext();
+        }
+        catch (final InsufficientCapacityException e)
+        {
+            return NOT_CLAIMED;
+        }
+    }
+
+    private void throwDecodeFailure()
+    {
+        final RuntimeException e = decodeFailure;
+        if (null != e)
+        {
+            decodeFailure = null;
+            throw e;
+        }
+    }
+
+    private void spill()
+    {
+        final int length = codec.encodedLength(scratch);
+        final int required = LENGTH_PREFIX + length;
+        if (required > buffer.capacity())
+        {
+            throw new IllegalArgumentException("Event of " + length + " bytes does not fit in the spill file");
+        }
+
+        int offset;
+        while (-1 == (offset = writeOffset(required)))
+        {
+            // the file is full, wait for the ring buffer to take back enough of it
+            claim(true);
+            try
+            {
+                decodeInto(claimedLo, Math.min(claimedHi, claimedLo + spilledCount - 1));
+            }
+            catch (final RuntimeException e)
+            {
+                decodeFailure = e;
+            }
+        }
+
+        writeView.clear();
+        writeView.position(offset + LENGTH_PREFIX);
+        codec.encode(scratch, writeView);
+        writeView.putInt(offset, length);
+        writePosition = offset + required;
+        spilledCount++;
+        totalSpilledCount++;
+    }
+
+    private int writeOffset(final int required)
+    {
+        if (0 == spilledCount)
+        {
+            return 0;
+        }
+
+        if (writePosition > readPosition)
+        {
+            if (writePosition + required <= buffer.capacity())
+            {
+                return writePosition;
+            }
+
+            if (required > readPosition)
+            {
+                return -1;
+            }
+
+            // wrap, leaving a marker for the reader unless the tail is too short to hold a length
+            if (buffer.capacity() - writePosition >= LENGTH_PREFIX)
+            {
+                writeView.putInt(writePosition, WRAP);
+            }
+            return 0;
+        }
+
+        // wrapped, the reader is ahead of the writer
+        return writePosition + required <= readPosition ? writePosition : -1;
+    }
+
+    private boolean claim(final boolean wait)
+    {
+        if (claimedLo <= claimedHi)
+        {
+            return true;
+        }
+
+        final long hi;
+        final int n;
+        if (wait)
+        {
+            n = (int) Math.min(spilledCount, Math.max(1, ringBuffer.remainingCapacity()));
+            hi = ringBuffer.next(n);
+        }
+        else
+        {
+            n = (int) Math.min(spilledCount, ringBuffer.remainingCapacity());
+            if (0 == n)
+            {
+                return false;
+            }
+
+            try
+            {
+                hi = ringBuffer.tryNext(n);
+            }
+            catch (final InsufficientCapacityException e)
+            {
+                return false;
+            }
+        }
+
+        claimedLo = hi - (n - 1);
+        claimedHi = hi;
+        return true;
+    }
+
+    private void decodeInto(final long lo, final long hi)
+    {
+        long sequence = lo;
+        try
+        {
+            for (; sequence <= hi; sequence++)
+            {
+                readView.clear();
+                if (buffer.capacity() - readPosition < LENGTH_PREFIX || WRAP == readView.getInt(readPosition))
+                {
+                    readPosition = 0;
+                }
+
+                final int length = readView.getInt(readPosition);
+                readView.position(readPosition + LENGTH_PREFIX);
+                readView.limit(readPosition + LENGTH_PREFIX + length);
+                try
+                {
+                    codec.decode(readView, ringBuffer.get(sequence));
+                }
+                finally
+                {
+                    // an event that fails to decode is dropped, its sequence is kept for the next one
+                    readPosition += LENGTH_PREFIX + length;
+                    spilledCount--;
+                }
+            }
+        }
+        finally
+        {
+            claimedLo = sequence;
+            if (sequence != lo)
+            {
+                ringBuffer.publish(lo, sequence - 1);
+            }
+
+            if (0 == spilledCount)
+            {
+                readPosition = 0;
+                writePosition = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.util;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import com.lmax.disruptor.Sequence;
+
+/**
+ * <p>Base for the striped statistics in this package, following the design of the JDK 8 LongAdder.  Updates go
+ * to a single base cell until a CAS on it fails, after which the value is spread over a set of cells, each a
+ * padded {@link Sequence}, chosen by a per-thread probe.  Threads that collide on a cell move to another one,
+ * so writers stop sharing a cache line.</p>
+ *
+ * <p>Reads fold every cell together and are therefore more expensive than writes; they are not atomic with
+ * respect to concurrent updates.</p>
+ * 参考LongAdder实现的分段统计基类, 每个cell是一个带缓存行填充的Sequence, 避免多个写线程竞争同一缓存行.
+ */
+public abstract class StripedLong
+{
+    private static final AtomicReferenceFieldUpdater<StripedLong, Sequence[]> CELLS_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater(StripedLong.class, Sequence[].class, "cells");
+
+    private static final int MAX_CELLS = Util.ceilingNextPowerOfTwo(Runtime.getRuntime().availableProcessors());
+
+    private static final ThreadLocal<int[]> PROBE = new ThreadLocal<int[]>()
+    {
+        @Override
+        protected int[] initialValue()
+        {
+            // spread thread ids, must never be zero for the xorshift in rehash
+            final int hash = (int) (Thread.currentThread().getId() * 0x9E3779B9L);
+            return new int[] {0 == hash ? 1 : hash};
+        }
+    };
+
+    private final long identity;
+    private final Sequence base;
+    private volatile Sequence[] cells;
+
+    /**
+     * @param identity value of an empty cell, such that <code>combine(identity, x) == x</code>.
+     */
+    protected StripedLong(final long identity)
+    {
+        this.identity = identity;
+        this.base = new Sequence(identity);
+    }
+
+    /**
+     * Combine the current value of a cell with an update.
+     *
+     * @param current value of the cell.
+     * @param x       the update.
+     * @return the new value of the cell.
+     */
+    protected abstract long combine(long current, long x);
+
+    /**
+     * Apply an update, contended updates are spread across cells.
+     *
+     * @param x the update.
+     */
+    protected final void accumulate(final long x)
+    {
+        Sequence[] cells = this.cells;
+        if (null == cells)
+        {
+            final long current = base.get();
+            final long updated = combine(current, x);
+            if (updated == current || base.compareAndSet(current, updated))
+            {
+                return;
+            }
+
+            cells = initCells();
+        }
+
+        final int[] probe = PROBE.get();
+        final int mask = cells.length - 1;
+        Sequence cell = cells[probe[0] & mask];
+        while (true)
+        {
+            final long current = cell.get();
+            final long updated = combine(current, x);
+            if (updated == current || cell.compareAndSet(current, updated))
+            {
+                return;
+            }
+
+            probe[0] = rehash(probe[0]);
+            cell = cells[probe[0] & mask];
+        }
+    }
+
+    /**
+     * Fold all cells together.
+     *
+     * @return the combined value.
+     */
+    protected final long fold()
+    {
+        long result = combine(identity, base.get());
+        final Sequence[] cells = this.cells;
+        if (null != cells)
+        {
+            for (int i = 0, n = cells.length; i < n; i++)
+            {
+                result = combine(result, cells[i].get());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Fold all cells together, resetting each to the identity value as it is read.  Updates racing with the
+     * reset are either included in the result or survive it, none are lost.
+     *
+     * @return the combined value prior to reset.
+     */
+    protected final long foldThenReset()
+    {
+        long result = combine(identity, getAndReset(base));
+        final Sequence[] cells = this.cells;
+        if (null != cells)
+        {
+            for (int i = 0, n = cells.length; i < n; i++)
+            {
+                result = combine(result, getAndReset(cells[i]));
+            }
+        }
+
+        return result;
+    }
+
+    private long getAndReset(final Sequence cell)
+    {
+        long current;
+        do
+        {
+            current = cell.get();
+        }
+        while (!cell.compareAndSet(current, identity));
+
+        return current;
+    }
+
+    private Sequence[] initCells()
+    {
+        final Sequence[] created = new Sequence[MAX_CELLS];
+        for (int i = 0; i < created.length; i++)
+        {
+            created[i] = new Sequence(identity);
+        }
+
+        CELLS_UPDATER.compareAndSet(this, null, created);
+        return cells;
+    }
+
+    private static int rehash(int probe)
+    {
+        probe ^= probe << 13;
+        probe ^= probe >>> 17;
+        probe ^= probe << 5;
+        return probe;
+    }
+
+    @Override
+    public String toString()
+    {
+        return Long.toString(fold());
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.util;
+
+/**
+ * Striped counter for recording event counts from many threads without contending on a single
+ * {@link java.util.concurrent.atomic.AtomicLong}.
+ * 分段计数器, 多线程累加时避免争用同一个AtomicLong.
+ *
+ * @see StripedLong
+ */
+public final class StripedLongCounter extends StripedLong
+{
+    public StripedLongCounter()
+    {
+        super(0L);
+    }
+
+    @Override
+    protected long combine(final long current, final long x)
+    {
+        return current + x;
+    }
+
+    /**
+     * Add the given value.
+     *
+     * @param x the value to add.
+     */
+    public void add(final long x)
+    {
+        accumulate(x);
+    }
+
+    /**
+     * Add one.
+     */
+    public void increment()
+    {
+        accumulate(1L);
+    }
+
+    /**
+     * @return the current sum.
+     */
+    public long sum()
+    {
+        return fold();
+    }
+
+    /**
+     * Read the current sum and reset the counter to zero.
+     *
+     * @return the sum prior to reset.
+     */
+    public long sumThenReset()
+    {
+        return foldThenReset();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.util;
+
+/**
+ * Striped minimum, e.g. for tracking the minimum latency or batch size observed across many threads.  An update
+ * that is not smaller than the value already held by its cell is a plain read with no write.
+ * 分段统计最小值, 不改变当前cell值的更新只有读操作.
+ *
+ * @see StripedLong
+ */
+public final class StripedLongMin extends StripedLong
+{
+    /**
+     * Create with no observations, {@link #get()} returns {@link Long#MAX_VALUE}.
+     */
+    public StripedLongMin()
+    {
+        super(Long.MAX_VALUE);
+    }
+
+    @Override
+    protected long combine(final long current, final long x)
+    {
+        return Math.min(current, x);
+    }
+
+    /**
+     * Record an observation.
+     *
+     * @param x the observed value.
+     */
+    public void update(final long x)
+    {
+        accumulate(x);
+    }
+
+    /**
+     * @return the minimum observed, {@link Long#MAX_VALUE} if nothing has been recorded.
+     */
+    public long get()
+    {
+        return fold();
+    }
+
+    /**
+     * Read the minimum observed and reset to no observations.
+     *
+     * @return the minimum prior to reset.
+     */
+    public long getThenReset()
+    {
+        return foldThenReset();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class PublishFutureTest
+{
+    @Test
+    public void shouldReportCancellationToListenerAddedWhileCancelling() throws Exception
+    {
+        for (int i = 0; i < 10000; i++)
+        {
+            final PublishFuture future = new PublishFuture();
+            final AtomicReference<Throwable> notified = new AtomicReference<Throwable>();
+            final CountDownLatch start = new CountDownLatch(1);
+            final Thread canceller = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    awaitQuietly(start);
+                    future.cancel(false);
+                }
+            };
+            canceller.start();
+
+            start.countDown();
+            while (!future.isDone())
+            {
+                // spin until the cancellation is visible, racing the listener registration against it
+            }
+            future.addListener(new PublishFuture.Listener()
+            {
+                @Override
+                public void onComplete(final long sequence, final Throwable failure)
+                {
+                    notified.set(failure);
+                }
+            });
+            canceller.join();
+
+            assertTrue("listener saw " + notified.get(), notified.get() instanceof CancellationException);
+            assertTrue(future.isCancelled());
+            try
+            {
+                future.get();
+                fail("expected CancellationException");
+            }
+            catch (final CancellationException expected)
+            {
+                assertEquals(Sequencer.INITIAL_CURSOR_VALUE, future.getSequence());
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotCancelOnceClaimed() throws Exception
+    {
+        final PublishFuture future = new PublishFuture();
+        assertTrue(future.startClaim());
+        assertTrue(!future.cancel(false));
+        future.published(7);
+        future.complete(null);
+        assertEquals(Long.valueOf(7), future.get());
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch)
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
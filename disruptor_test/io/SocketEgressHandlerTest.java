@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+
+import org.junit.Test;
+
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.RingBuffer;
+
+public class SocketEgressHandlerTest
+{
+    private static final class LongEvent
+    {
+        private long value;
+    }
+
+    private static final EventFactory<LongEvent> FACTORY = new EventFactory<LongEvent>()
+    {
+        @Override
+        public LongEvent newInstance()
+        {
+            return new LongEvent();
+        }
+    };
+
+    private static final class FailingCodec implements EventEncoder<LongEvent>, EventDecoder<LongEvent>
+    {
+        private long failOn = Long.MIN_VALUE;
+
+        @Override
+        public int encodedLength(final LongEvent event)
+        {
+            return 12;
+        }
+
+        @Override
+        public void encode(final LongEvent event, final ByteBuffer buffer)
+        {
+            buffer.putLong(event.value);
+            if (event.value == failOn)
+            {
+                throw new IllegalStateException("encoder failure");
+            }
+            buffer.putInt(~(int) event.value);
+        }
+
+        @Override
+        public void decode(final ByteBuffer buffer, final LongEvent event)
+        {
+            event.value = buffer.getLong();
+            assertEquals(~(int) event.value, buffer.getInt());
+        }
+    }
+
+    @Test
+    public void shouldDropFrameWhoseEncodingFailsAndKeepPeerInSync() throws Exception
+    {
+        final Pipe pipe = Pipe.open();
+        final FailingCodec codec = new FailingCodec();
+        codec.failOn = 2;
+        final SocketEgressHandler<LongEvent> handler = new SocketEgressHandler<LongEvent>(pipe.sink(), codec, 64, 1024);
+
+        final LongEvent event = new LongEvent();
+        event.value = 1;
+        handler.onEvent(event, 0, false);
+        event.value = 2;
+        try
+        {
+            handler.onEvent(event, 1, false);
+            fail("expected the encoder to throw");
+        }
+        catch (final IllegalStateException expected)
+        {
+            // the failed frame must not reach the wire
+        }
+        event.value = 3;
+        handler.onEvent(event, 2, true);
+        pipe.sink().close();
+
+        final RingBuffer<LongEvent> ringBuffer = RingBuffer.createSingleProducer(FACTORY, 16);
+        final SocketIngress<LongEvent> ingress = new SocketIngress<LongEvent>(pipe.source(), ringBuffer, codec, 256);
+        int received = 0;
+        int read;
+        while (-1 != (read = ingress.read()))
+        {
+            received += read;
+        }
+
+        assertEquals(2, received);
+        assertEquals(1L, ringBuffer.get(0).value);
+        assertEquals(3L, ringBuffer.get(1).value);
+    }
+
+    @Test
+    public void shouldFlushPendingFramesWhenEncodingFailsInAFreshChunk() throws Exception
+    {
+        final Pipe pipe = Pipe.open();
+        final FailingCodec codec = new FailingCodec();
+        codec.failOn = 2;
+        final SocketEgressHandler<LongEvent> handler = new SocketEgressHandler<LongEvent>(pipe.sink(), codec, 16, 1024);
+
+        final LongEvent event = new LongEvent();
+        event.value = 1;
+        handler.onEvent(event, 0, false);
+        event.value = 2;
+        try
+        {
+            handler.onEvent(event, 1, false);
+            fail("expected the encoder to throw");
+        }
+        catch (final IllegalStateException expected)
+        {
+            // the first chunk was full, so the failed frame left the next chunk empty
+        }
+        handler.flush();
+        pipe.sink().close();
+
+        final RingBuffer<LongEvent> ringBuffer = RingBuffer.createSingleProducer(FACTORY, 16);
+        final SocketIngress<LongEvent> ingress = new SocketIngress<LongEvent>(pipe.source(), ringBuffer, codec, 256);
+        int received = 0;
+        int read;
+        while (-1 != (read = ingress.read()))
+        {
+            received += read;
+        }
+
+        assertEquals(1, received);
+        assertEquals(1L, ringBuffer.get(0).value);
+    }
+}
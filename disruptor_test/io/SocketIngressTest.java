@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+
+import org.junit.Test;
+
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.RingBuffer;
+
+public class SocketIngressTest
+{
+    private static final long INVALID = -1;
+
+    private static final class LongEvent
+    {
+        private long value;
+    }
+
+    private static final EventFactory<LongEvent> FACTORY = new EventFactory<LongEvent>()
+    {
+        @Override
+        public LongEvent newInstance()
+        {
+            return new LongEvent();
+        }
+    };
+
+    private static final class FailingCodec implements EventEncoder<LongEvent>, EventDecoder<LongEvent>
+    {
+        private long failOn = Long.MIN_VALUE;
+
+        @Override
+        public int encodedLength(final LongEvent event)
+        {
+            return 8;
+        }
+
+        @Override
+        public void encode(final LongEvent event, final ByteBuffer buffer)
+        {
+            buffer.putLong(event.value);
+        }
+
+        @Override
+        public void decode(final ByteBuffer buffer, final LongEvent event)
+        {
+            final long value = buffer.getLong();
+            if (value == failOn)
+            {
+                event.value = INVALID;
+                throw new IllegalStateException("decoder failure");
+            }
+            event.value = value;
+        }
+    }
+
+    @Test
+    public void shouldPublishEveryFrameBeforeRethrowingADecoderFailure() throws Exception
+    {
+        final Pipe pipe = Pipe.open();
+        final FailingCodec codec = new FailingCodec();
+        final SocketEgressHandler<LongEvent> handler = new SocketEgressHandler<LongEvent>(pipe.sink(), codec, 64, 1024);
+        final LongEvent event = new LongEvent();
+        for (long value = 1; value <= 4; value++)
+        {
+            event.value = value;
+            handler.onEvent(event, value - 1, 4 == value);
+        }
+        pipe.sink().close();
+
+        codec.failOn = 2;
+        final RingBuffer<LongEvent> ringBuffer = RingBuffer.createSingleProducer(FACTORY, 16);
+        final SocketIngress<LongEvent> ingress = new SocketIngress<LongEvent>(pipe.source(), ringBuffer, codec, 256);
+        try
+        {
+            ingress.read();
+            fail("expected the decoder to throw");
+        }
+        catch (final IllegalStateException expected)
+        {
+            // every frame is published, the failed one invalidated, so no sequence is left claimed
+        }
+        assertEquals(3L, ringBuffer.getCursor());
+        assertEquals(1L, ringBuffer.get(0).value);
+        assertEquals(INVALID, ringBuffer.get(1).value);
+        assertEquals(3L, ringBuffer.get(2).value);
+        assertEquals(4L, ringBuffer.get(3).value);
+
+        assertEquals(-1, ingress.read());
+        assertEquals(3L, ringBuffer.getCursor());
+    }
+}